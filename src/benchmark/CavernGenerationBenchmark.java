@@ -0,0 +1,122 @@
+package benchmark;
+
+import game.Cavern;
+import game.CavernGrid;
+import game.Constants;
+import game.DigCounters;
+import game.DigMode;
+import game.Tile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Benchmarks for {@code Cavern.digExploreCavern} and {@code Cavern.digEscapeCavern}
+ * across the playable size range in {@code Constants} and some larger custom sizes.
+ * The same caverns are also dug as {@code CavernGrid}s, which share the bitset dig with
+ * {@code Cavern} but build no nodes or edges, to separate the cost of digging from the
+ * cost of building the object graph. Caverns are dug in each {@code DigMode}, alone and as the
+ * pair of caverns of one game (whose time per operation is the time per seed), and the number
+ * of caverns dug for each one kept is reported from {@code DigCounters}.
+ * <p>
+ * Sizes may be given on the command line as {@code <rows>x<cols>} (e.g. {@code 25x40 200x300});
+ * otherwise the corners and midpoint of the {@code Constants} range are measured,
+ * followed by {@link #CUSTOM_SIZES}.
+ */
+public class CavernGenerationBenchmark {
+    /**
+     * Caverns bigger than the game allows, to show how generation scales.
+     */
+    private static final int[][] CUSTOM_SIZES = {{50, 80}, {100, 160}, {250, 400}};
+
+    public static void main(String[] args) {
+        List<int[]> sizes = args.length > 0 ? parseSizes(args) : defaultSizes();
+
+        Harness.printHeader();
+        for (int[] size : sizes) {
+            int rows = size[0];
+            int cols = size[1];
+            Random rand = new Random(rows * 31L + cols);
+            runCounted("digExploreCavern " + rows + "x" + cols,
+                () -> Cavern.digExploreCavern(rows, cols, rand).numOpenTiles());
+            runCounted("digExploreCavern constructive " + rows + "x" + cols,
+                () -> Cavern.digExploreCavern(rows, cols, rand, DigMode.CONSTRUCTIVE).numOpenTiles());
+            runCounted("digEscapeCavern " + rows + "x" + cols,
+                () -> Cavern.digEscapeCavern(rows, cols, rows / 2, cols / 2, rand).numOpenTiles());
+            runCounted("digEscapeCavern constructive " + rows + "x" + cols,
+                () -> Cavern.digEscapeCavern(rows, cols, rows / 2, cols / 2, rand, DigMode.CONSTRUCTIVE)
+                    .numOpenTiles());
+            for (DigMode mode : DigMode.values()) {
+                runCounted("both caverns " + mode.name().toLowerCase(Locale.ROOT) + " " + rows + "x" + cols,
+                    () -> digBoth(rows, cols, rand, mode));
+            }
+            Harness.run("CavernGrid.digExploreCavern " + rows + "x" + cols,
+                () -> CavernGrid.digExploreCavern(rows, cols, rand).numOpenTiles());
+            Harness.run("CavernGrid.digEscapeCavern " + rows + "x" + cols,
+                () -> CavernGrid.digEscapeCavern(rows, cols, rows / 2, cols / 2, rand).numOpenTiles());
+        }
+    }
+
+    /**
+     * Dig the explore cavern and then the escape cavern of one game of size (rows, cols),
+     * as {@code GameState} does for a seed, and return their total number of open tiles.
+     */
+    private static long digBoth(int rows, int cols, Random rand, DigMode mode) {
+        Cavern explore = Cavern.digExploreCavern(rows, cols, rand, mode);
+        Tile orb = explore.getTarget().getTile();
+        Cavern escape = Cavern.digEscapeCavern(rows, cols, orb.getRow(), orb.getColumn(), rand, mode);
+        return explore.numOpenTiles() + escape.numOpenTiles();
+    }
+
+    /**
+     * Measure op as {@code Harness.run} does, then print the number of explore and of escape
+     * caverns dug for each one kept, for each kind that op dug.
+     */
+    private static void runCounted(String name, LongSupplier op) {
+        DigCounters.reset();
+        Harness.run(name, op);
+        StringBuilder counts = new StringBuilder();
+        appendAttempts(counts, "explore", DigCounters.exploreAttempts(), DigCounters.exploreRejections());
+        appendAttempts(counts, "escape", DigCounters.escapeAttempts(), DigCounters.escapeRejections());
+        System.out.printf(Locale.ROOT, "%-40s %s%n", "", counts);
+    }
+
+    /**
+     * Append to counts the attempts per cavern of the given kind, if any were dug.
+     */
+    private static void appendAttempts(StringBuilder counts, String kind, long attempts, long rejections) {
+        if (attempts > 0) {
+            counts.append(String.format(Locale.ROOT, "%8.2f %s attempts per cavern", attempts
+                / (double) (attempts - rejections), kind));
+        }
+    }
+
+    /**
+     * Return every combination of the smallest, middle and largest row and column
+     * counts in {@code Constants}, followed by the custom sizes.
+     */
+    private static List<int[]> defaultSizes() {
+        int[] rows = {Constants.MIN_ROWS, (Constants.MIN_ROWS + Constants.MAX_ROWS) / 2, Constants.MAX_ROWS};
+        int[] cols = {Constants.MIN_COLS, (Constants.MIN_COLS + Constants.MAX_COLS) / 2, Constants.MAX_COLS};
+        List<int[]> sizes = new ArrayList<>();
+        for (int r : rows) {
+            for (int c : cols) {
+                sizes.add(new int[]{r, c});
+            }
+        }
+        sizes.addAll(List.of(CUSTOM_SIZES));
+        return sizes;
+    }
+
+    private static List<int[]> parseSizes(String[] args) {
+        List<int[]> sizes = new ArrayList<>();
+        for (String arg : args) {
+            String[] parts = arg.split("x");
+            sizes.add(new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])});
+        }
+        return sizes;
+    }
+}
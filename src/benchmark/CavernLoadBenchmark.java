@@ -0,0 +1,83 @@
+package benchmark;
+
+import game.Cavern;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Benchmarks loading a cavern from disk: the text format of {@code Cavern.serialize()},
+ * read either with {@code Files.readAllLines} and {@code Cavern.deserialize(List)} or in a
+ * single streaming pass with {@code Cavern.deserialize(Path)}, against the binary format of
+ * {@code Cavern.writeBinary()}, read with {@code Cavern.readBinary}.
+ * <p>
+ * One escape cavern of each size is written to a temporary directory in both formats,
+ * and each operation loads one of the files. Sizes may be given on the command line as
+ * {@code <rows>x<cols>}.
+ */
+public class CavernLoadBenchmark {
+    private static final int[][] DEFAULT_SIZES = {{25, 40}, {100, 160}, {250, 400}};
+
+    public static void main(String[] args) throws IOException {
+        int[][] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length][];
+            for (int i = 0; i < args.length; i++) {
+                String[] parts = args[i].split("x");
+                sizes[i] = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+            }
+        }
+
+        Path dir = Files.createTempDirectory("cavern-load");
+        try {
+            Harness.printHeader();
+            for (int[] size : sizes) {
+                int rows = size[0];
+                int cols = size[1];
+                Cavern cavern = Cavern.digEscapeCavern(rows, cols, rows / 2, cols / 2, new Random(rows * 31L + cols));
+                Path text = dir.resolve(rows + "x" + cols + ".txt");
+                Path binary = dir.resolve(rows + "x" + cols + ".bin");
+                Files.write(text, cavern.serialize());
+                cavern.writeBinary(binary);
+
+                String label = rows + "x" + cols + " (" + Files.size(text) / 1024 + " KiB text, "
+                    + Files.size(binary) / 1024 + " KiB binary)";
+                System.out.println(label);
+                Harness.run("deserialize text " + rows + "x" + cols,
+                    () -> load(() -> Cavern.deserialize(Files.readAllLines(text))));
+                Harness.run("stream text " + rows + "x" + cols,
+                    () -> load(() -> Cavern.deserialize(text)));
+                Harness.run("readBinary " + rows + "x" + cols,
+                    () -> load(() -> Cavern.readBinary(binary)));
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Load a cavern with loader and return its number of open tiles.
+     */
+    private static long load(Loader loader) {
+        try {
+            return loader.load().numOpenTiles();
+        } catch (IOException e) {
+            throw new IllegalStateException("Couldn't load a benchmark cavern", e);
+        }
+    }
+
+    /**
+     * A way of loading a cavern that may fail with an IOException.
+     */
+    @FunctionalInterface
+    private interface Loader {
+        Cavern load() throws IOException;
+    }
+}
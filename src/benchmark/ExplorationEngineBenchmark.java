@@ -0,0 +1,65 @@
+package benchmark;
+
+import game.ExplorationState;
+import game.GameState;
+import game.NodeStatus;
+import student.Explorer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Collection;
+
+/**
+ * Benchmarks the engine calls an explorer makes at every step of the explore phase:
+ * {@code getNeighbours}, {@code getDistanceToTarget} and {@code moveTo(long)}.
+ * <p>
+ * Each operation plays the explore phase of one game with an explorer that takes
+ * {@link #STEPS} steps of a fixed walk (the i-th step goes to neighbour i mod the number of
+ * neighbours), so the explorer's own logic costs next to nothing and the time is the engine's.
+ * The walk does not end on the orb, so the escape phase is never played. Steps per second are
+ * ops/s times {@link #STEPS}.
+ */
+public class ExplorationEngineBenchmark {
+    private static final int STEPS = 100_000;
+    private static final long SEED = 1;
+
+    public static void main(String[] args) {
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+
+        Harness.printHeader();
+        Harness.run("walk, getNeighbours(ids, distances)",
+            () -> GameState.runHeadless(SEED, new Explorer() {
+                @Override
+                public void explore(ExplorationState state) {
+                    long[] ids = new long[4];
+                    int[] distances = new int[4];
+                    for (int i = 0; i < STEPS; i++) {
+                        int count = state.getNeighbours(ids, distances);
+                        if (state.getDistanceToTarget() < 0) {
+                            return;
+                        }
+                        state.moveTo(ids[i % count]);
+                    }
+                }
+            }, quiet, quiet).stepsTaken());
+        Harness.run("walk, getNeighbours()",
+            () -> GameState.runHeadless(SEED, new Explorer() {
+                @Override
+                public void explore(ExplorationState state) {
+                    for (int i = 0; i < STEPS; i++) {
+                        Collection<NodeStatus> neighbours = state.getNeighbours();
+                        if (state.getDistanceToTarget() < 0) {
+                            return;
+                        }
+                        int k = i % neighbours.size();
+                        for (NodeStatus n : neighbours) {
+                            if (k-- == 0) {
+                                state.moveTo(n.nodeID());
+                                break;
+                            }
+                        }
+                    }
+                }
+            }, quiet, quiet).stepsTaken());
+    }
+}
@@ -0,0 +1,86 @@
+package benchmark;
+
+import game.ExplorationState;
+import game.GameResult;
+import game.GameState;
+import main.Utilities;
+import student.Explorer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Compares the steps taken to find the orb by the map-building explorer ({@code Explorer.explore})
+ * and by the original depth-first search ({@code Explorer.exploreDepthFirst}) on a seed corpus.
+ * Games are deterministic, so each seed is played once per strategy.
+ * <p>
+ * For each strategy the total steps and the mean and worst ratio of steps to the minimum are
+ * reported, along with how many seeds each strategy wins outright.
+ * <p>
+ * Usage: {@code java benchmark.ExplorationStepsBenchmark [-corpus <file>] [-v]}, where {@code -v}
+ * also prints one line per seed.
+ */
+public class ExplorationStepsBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        List<String> argList = Arrays.asList(args);
+        int corpusIndex = argList.indexOf("-corpus");
+        Path corpus = Path.of(corpusIndex >= 0 ? argList.get(corpusIndex + 1)
+            : ExplorerBenchmark.DEFAULT_CORPUS);
+        boolean verbose = argList.contains("-v");
+
+        long[] seeds = Utilities.readSeedFile(corpus);
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        GameResult[] mapped = new GameResult[seeds.length];
+        GameResult[] depthFirst = new GameResult[seeds.length];
+        for (int i = 0; i < seeds.length; i++) {
+            mapped[i] = GameState.runHeadless(seeds[i], new Explorer(), quiet, quiet);
+            depthFirst[i] = GameState.runHeadless(seeds[i], new Explorer() {
+                @Override
+                public void explore(ExplorationState state) {
+                    exploreDepthFirst(state);
+                }
+            }, quiet, quiet);
+        }
+
+        if (verbose) {
+            System.out.printf(Locale.ROOT, "%-22s %8s %10s %10s%n", "seed", "min", "map steps", "dfs steps");
+            for (int i = 0; i < seeds.length; i++) {
+                System.out.printf(Locale.ROOT, "%-22d %8d %10d %10d%n", seeds[i],
+                    mapped[i].minTimeToExplore(), mapped[i].stepsTaken(), depthFirst[i].stepsTaken());
+            }
+            System.out.println();
+        }
+
+        int mapWins = 0;
+        int dfsWins = 0;
+        for (int i = 0; i < seeds.length; i++) {
+            int compare = Integer.compare(mapped[i].stepsTaken(), depthFirst[i].stepsTaken());
+            if (compare < 0) {
+                mapWins++;
+            } else if (compare > 0) {
+                dfsWins++;
+            }
+        }
+
+        System.out.println("Corpus       : " + corpus + " (" + seeds.length + " seeds)");
+        printSteps("map explorer", mapped);
+        printSteps("depth-first", depthFirst);
+        System.out.println("Fewer steps  : map explorer on " + mapWins + " seeds, depth-first on "
+            + dfsWins + ", tied on " + (seeds.length - mapWins - dfsWins));
+    }
+
+    private static void printSteps(String strategy, GameResult[] results) {
+        long total = Arrays.stream(results).mapToLong(GameResult::stepsTaken).sum();
+        double mean = Arrays.stream(results).mapToDouble(GameResult::stepsRatio).average().orElse(0);
+        double worst = Arrays.stream(results).mapToDouble(GameResult::stepsRatio).max().orElse(0);
+        long failures = Arrays.stream(results).filter((r) -> !r.exploreSucceeded()).count();
+        System.out.printf(Locale.ROOT, "%-12s : %d steps, steps / minimum %.3f (mean) %.3f (worst), %d failed%n",
+            strategy, total, mean, worst, failures);
+    }
+}
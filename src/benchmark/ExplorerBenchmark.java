@@ -0,0 +1,95 @@
+package benchmark;
+
+import game.GameResult;
+import game.GameState;
+import main.Utilities;
+import student.Explorer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Benchmark for {@code Explorer.explore} and {@code Explorer.escape} over a fixed seed corpus.
+ * Every seed is played headless with a fresh explorer; the corpus is replayed a few times
+ * to warm up the JIT and then measured.
+ * <p>
+ * For each phase the wall time per game is reported (mean, median and max over all measured
+ * games). Because the games are deterministic, the game metrics (steps relative to
+ * the minimum, gold and score) are the same in every pass and are reported once.
+ * <p>
+ * Usage: {@code java benchmark.ExplorerBenchmark [-corpus <file>] [-v]}, where {@code -v}
+ * also prints one line per seed. The default corpus is {@link #DEFAULT_CORPUS}.
+ */
+public class ExplorerBenchmark {
+    static final String DEFAULT_CORPUS = "res/seeds.txt";
+    private static final int WARMUP_PASSES = 1;
+    private static final int MEASURED_PASSES = 3;
+
+    public static void main(String[] args) throws IOException {
+        List<String> argList = Arrays.asList(args);
+        int corpusIndex = argList.indexOf("-corpus");
+        Path corpus = Path.of(corpusIndex >= 0 ? argList.get(corpusIndex + 1) : DEFAULT_CORPUS);
+        boolean verbose = argList.contains("-v");
+
+        long[] seeds = Utilities.readSeedFile(corpus);
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            playAll(seeds);
+        }
+
+        List<GameResult> results = new ArrayList<>();
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            results.addAll(playAll(seeds));
+        }
+
+        if (verbose) {
+            System.out.printf(Locale.ROOT, "%-22s %8s %8s %8s %8s %12s %12s%n",
+                "seed", "steps", "min", "gold", "score", "explore ms", "escape ms");
+            for (GameResult r : results.subList(0, seeds.length)) {
+                System.out.printf(Locale.ROOT, "%-22d %8d %8d %8d %8d %12.3f %12.3f%n",
+                    r.seed(), r.stepsTaken(), r.minTimeToExplore(), r.goldCollected(), r.score(),
+                    r.exploreNanos() / 1e6, r.escapeNanos() / 1e6);
+            }
+            System.out.println();
+        }
+
+        System.out.println("Corpus           : " + corpus + " (" + seeds.length + " seeds, "
+            + MEASURED_PASSES + " measured passes)");
+        printTimes("explore", results.stream().mapToLong(GameResult::exploreNanos).toArray());
+        printTimes("escape", results.stream().mapToLong(GameResult::escapeNanos).toArray());
+
+        List<GameResult> onePass = results.subList(0, seeds.length);
+        System.out.printf(Locale.ROOT, "Steps / minimum  : %.3f (mean)%n",
+            onePass.stream().mapToDouble(GameResult::stepsRatio).average().orElse(0));
+        System.out.printf(Locale.ROOT, "Gold             : %.1f (mean)%n",
+            onePass.stream().mapToInt(GameResult::goldCollected).average().orElse(0));
+        System.out.printf(Locale.ROOT, "Score            : %.1f (mean)%n",
+            onePass.stream().mapToInt(GameResult::score).average().orElse(0));
+        long failures = onePass.stream().filter((r) -> !r.exploreSucceeded() || !r.escapeSucceeded()).count();
+        System.out.println("Failed games     : " + failures);
+    }
+
+    /**
+     * Play one game per seed with a fresh explorer and no console output.
+     */
+    private static List<GameResult> playAll(long[] seeds) {
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream());
+        List<GameResult> results = new ArrayList<>(seeds.length);
+        for (long seed : seeds) {
+            results.add(GameState.runHeadless(seed, new Explorer(), quiet, quiet));
+        }
+        return results;
+    }
+
+    private static void printTimes(String phase, long[] nanos) {
+        Arrays.sort(nanos);
+        double mean = Arrays.stream(nanos).average().orElse(0) / 1e6;
+        System.out.printf(Locale.ROOT, "%-16s : mean %.3f ms, median %.3f ms, max %.3f ms per game%n",
+            phase, mean, nanos[nanos.length / 2] / 1e6, nanos[nanos.length - 1] / 1e6);
+    }
+}
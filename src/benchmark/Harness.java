@@ -0,0 +1,126 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * A minimal micro-benchmark harness in the spirit of JMH, for a project with no build tool.
+ * Each benchmark is a warmed-up, time-boxed loop over a single operation, measured on the
+ * calling thread. Throughput is reported in ops/s and allocation (as JMH's gc profiler does)
+ * in bytes per operation and MB/s.
+ * <p>
+ * Run with a fixed heap and no other load, e.g. {@code java -Xms2g -Xmx2g benchmark.SomeBenchmark}.
+ */
+public final class Harness {
+    /**
+     * Number of warm-up iterations and measured iterations per benchmark.
+     */
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    /**
+     * Length of each iteration in milliseconds.
+     */
+    private static final long ITERATION_MILLIS = Long.getLong("bench.iterationMillis", 500);
+
+    /**
+     * Written to by every benchmark so the JIT cannot discard the measured work.
+     */
+    private static long blackhole;
+
+    private Harness() {
+    }
+
+    /**
+     * Print the header of the result table.
+     */
+    public static void printHeader() {
+        System.out.printf(Locale.ROOT, "%-40s %14s %12s %14s %12s%n",
+            "Benchmark", "ops/s", "+- error", "B/op", "MB/s");
+    }
+
+    /**
+     * Measure op, which performs one operation per call and returns a value
+     * derived from its result, and print a row of the result table.
+     */
+    public static Result run(String name, LongSupplier op) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(op);
+        }
+
+        double[] opsPerSecond = new double[MEASURED_ITERATIONS];
+        long totalOps = 0;
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long[] ops = iteration(op);
+            opsPerSecond[i] = ops[0] * 1e9 / ops[1];
+            totalOps += ops[0];
+            totalNanos += ops[1];
+            totalBytes += ops[2];
+        }
+
+        Result result = new Result(name, mean(opsPerSecond), error(opsPerSecond),
+            totalBytes / (double) totalOps, totalBytes / 1e6 / (totalNanos / 1e9));
+        System.out.printf(Locale.ROOT, "%-40s %14.3f %12.3f %14.1f %12.1f%n", result.name(),
+            result.opsPerSecond(), result.error(), result.bytesPerOp(), result.megabytesPerSecond());
+        return result;
+    }
+
+    /**
+     * Run op repeatedly for one iteration and return {operations, elapsed nanos, allocated bytes}.
+     */
+    private static long[] iteration(LongSupplier op) {
+        long deadline = System.nanoTime() + ITERATION_MILLIS * 1_000_000;
+        long ops = 0;
+        long bytesBefore = allocatedBytes();
+        long start = System.nanoTime();
+        long now;
+        do {
+            blackhole += op.getAsLong();
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        long bytes = allocatedBytes() - bytesBefore;
+        return new long[]{ops, now - start, bytes};
+    }
+
+    /**
+     * Return the number of bytes allocated so far by the current thread, or 0 if the
+     * JVM cannot report it.
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static double mean(double[] xs) {
+        double sum = 0;
+        for (double x : xs) {
+            sum += x;
+        }
+        return sum / xs.length;
+    }
+
+    /**
+     * Return the half-width of a ~99.9% confidence interval for the mean of xs.
+     */
+    private static double error(double[] xs) {
+        double mean = mean(xs);
+        double sq = 0;
+        for (double x : xs) {
+            sq += (x - mean) * (x - mean);
+        }
+        double stdDev = Math.sqrt(sq / (xs.length - 1));
+        return 3.29 * stdDev / Math.sqrt(xs.length);
+    }
+
+    /**
+     * The outcome of one benchmark.
+     */
+    public record Result(String name, double opsPerSecond, double error,
+                         double bytesPerOp, double megabytesPerSecond) {
+    }
+}
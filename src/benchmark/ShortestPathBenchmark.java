@@ -0,0 +1,127 @@
+package benchmark;
+
+import game.AStar;
+import game.Cavern;
+import game.CompactGraph;
+import game.Node;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Benchmarks point-to-point shortest path queries on escape caverns of increasing size:
+ * the {@code AStar} engine against the Dijkstra search the explorer used before it
+ * (a {@code PriorityQueue} of entries with {@code HashMap}/{@code HashSet} bookkeeping
+ * over Node objects). Each operation answers one query between a fixed, seeded
+ * sequence of random pairs of open tiles.
+ * <p>
+ * Sizes may be given on the command line as {@code <rows>x<cols>}.
+ */
+public class ShortestPathBenchmark {
+    private static final int[][] DEFAULT_SIZES = {{25, 40}, {100, 160}, {250, 400}, {500, 800}};
+    private static final int PAIRS = 1024;
+
+    public static void main(String[] args) {
+        int[][] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length][];
+            for (int i = 0; i < args.length; i++) {
+                String[] parts = args[i].split("x");
+                sizes[i] = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+            }
+        }
+
+        Harness.printHeader();
+        for (int[] size : sizes) {
+            int rows = size[0];
+            int cols = size[1];
+            Cavern cavern = Cavern.digEscapeCavern(rows, cols, rows / 2, cols / 2, new Random(rows * 31L + cols));
+            CompactGraph g = cavern.getCompactGraph();
+            Node[] nodesById = new Node[g.vertexCount()];
+            for (Node n : cavern.getGraph()) {
+                nodesById[(int) n.getId()] = n;
+            }
+
+            Random rand = new Random(42);
+            int[] sources = new int[PAIRS];
+            int[] targets = new int[PAIRS];
+            for (int i = 0; i < PAIRS; i++) {
+                sources[i] = rand.nextInt(g.vertexCount());
+                targets[i] = rand.nextInt(g.vertexCount());
+            }
+
+            AStar aStar = new AStar(g);
+            int[] next = new int[1];
+            Harness.run("AStar.distance " + rows + "x" + cols, () -> {
+                int i = next[0]++ & (PAIRS - 1);
+                return aStar.distance(sources[i], targets[i]);
+            });
+            Harness.run("Dijkstra (HashMap) " + rows + "x" + cols, () -> {
+                int i = next[0]++ & (PAIRS - 1);
+                return dijkstra(nodesById[sources[i]], nodesById[targets[i]]);
+            });
+        }
+    }
+
+    /**
+     * Return the length of the shortest path from start to end, or -1 if there is none,
+     * searching the way the explorer did before it used {@code AStar}.
+     */
+    private static int dijkstra(Node start, Node end) {
+        PriorityQueue<Entry> queue = new PriorityQueue<>();
+        Map<Node, Entry> nodeTable = new HashMap<>();
+        Set<Node> visited = new HashSet<>();
+
+        Entry startEntry = new Entry(start, 0);
+        nodeTable.put(start, startEntry);
+        queue.add(startEntry);
+        while (!queue.isEmpty()) {
+            Entry entry = queue.poll();
+            Node node = entry.node;
+            visited.add(node);
+            if (node.equals(end)) {
+                return entry.dist;
+            }
+
+            for (Node n : node.getNeighbours()) {
+                if (visited.contains(n)) {
+                    continue;
+                }
+                int totalDistance = entry.dist + node.getEdge(n).length;
+                Entry neighbourEntry = nodeTable.get(n);
+                if (neighbourEntry == null) {
+                    neighbourEntry = new Entry(n, totalDistance);
+                    nodeTable.put(n, neighbourEntry);
+                    queue.add(neighbourEntry);
+                } else if (totalDistance < neighbourEntry.dist) {
+                    queue.remove(neighbourEntry);
+                    neighbourEntry.dist = totalDistance;
+                    queue.add(neighbourEntry);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A node and its distance from the start in the reference Dijkstra search.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final Node node;
+        private int dist;
+
+        Entry(Node node, int dist) {
+            this.node = node;
+            this.dist = dist;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return Integer.compare(dist, o.dist);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * An A* search engine for point-to-point shortest paths over a {@code CompactGraph}.
+ * <p>
+ * Every edge joins two adjacent tiles of the grid, so the Manhattan distance between two
+ * tiles, scaled by the smallest edge weight in the graph, never overestimates the length of
+ * a path between them and never drops by more than the weight of an edge along one. That
+ * makes it an admissible and consistent heuristic: each vertex is settled at most once, and
+ * searches toward a target settle far fewer vertices than Dijkstra's algorithm.
+ * <p>
+ * An instance keeps its per-vertex arrays and heap between searches. Arrays are invalidated
+ * by bumping a search counter rather than being cleared, so a search costs time proportional
+ * to the vertices it touches, not to the size of the graph. An instance is not thread-safe.
+ */
+public class AStar {
+    private final CompactGraph g;
+    /** The smallest edge weight in g, which scales the heuristic. */
+    private final int minWeight;
+    private final IntMinHeap open;
+
+    /**
+     * Per-vertex state, valid only where visited[v] == search:
+     * dist[v] is the length of the shortest path found so far from the source,
+     * parent[v] the vertex before v on that path (-1 for the source),
+     * and closed[v] == search iff v has been settled.
+     */
+    private final int[] dist;
+    private final int[] parent;
+    private final int[] visited;
+    private final int[] closed;
+    private int search;
+
+    /**
+     * Constructor: an engine for searches over g.
+     */
+    public AStar(CompactGraph g) {
+        this.g = g;
+        int min = Integer.MAX_VALUE;
+        for (int k = 0; k < g.edgeCount(); k++) {
+            min = Math.min(min, g.weight(k));
+        }
+        minWeight = (min == Integer.MAX_VALUE ? 0 : min);
+        int n = g.vertexCount();
+        open = new IntMinHeap(n);
+        dist = new int[n];
+        parent = new int[n];
+        visited = new int[n];
+        closed = new int[n];
+    }
+
+    /**
+     * Return the length of the shortest path from source to target, or -1 if there is none.
+     */
+    public int distance(int source, int target) {
+        return run(source, target) ? dist[target] : -1;
+    }
+
+    /**
+     * Return the vertices of a shortest path from source to target, starting with source
+     * and ending with target, or null if there is no such path.
+     */
+    public int[] path(int source, int target) {
+        if (!run(source, target)) {
+            return null;
+        }
+        int length = 1;
+        for (int v = target; parent[v] != -1; v = parent[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target, i = length - 1; i >= 0; v = parent[v], i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+
+    /**
+     * Run A* from source until target is settled. Return true iff target is reachable,
+     * in which case dist and parent describe a shortest path to it.
+     */
+    private boolean run(int source, int target) {
+        nextSearch();
+        open.clear();
+        touch(source, 0, -1);
+        open.add(source, heuristic(source, target));
+
+        while (!open.isEmpty()) {
+            int v = open.poll();
+            if (v == target) {
+                return true;
+            }
+            closed[v] = search;
+
+            int dv = dist[v];
+            for (int k = g.offset(v), end = g.offset(v + 1); k < end; k++) {
+                int w = g.target(k);
+                if (closed[w] == search) {
+                    continue;
+                }
+                int dw = dv + g.weight(k);
+                if (visited[w] != search) {
+                    touch(w, dw, v);
+                    open.add(w, dw + heuristic(w, target));
+                } else if (dw < dist[w]) {
+                    dist[w] = dw;
+                    parent[w] = v;
+                    open.changePriority(w, dw + heuristic(w, target));
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record that v has been reached at distance d from the source via parent p.
+     */
+    private void touch(int v, int d, int p) {
+        visited[v] = search;
+        dist[v] = d;
+        parent[v] = p;
+    }
+
+    /**
+     * Start a new search, invalidating the state of all earlier ones.
+     */
+    private void nextSearch() {
+        search++;
+        if (search == Integer.MAX_VALUE) {
+            // Wrapped around: stamps from old searches could now look current.
+            Arrays.fill(visited, 0);
+            Arrays.fill(closed, 0);
+            search = 1;
+        }
+    }
+
+    /**
+     * Return a lower bound on the length of any path from v to target.
+     */
+    private int heuristic(int v, int target) {
+        return minWeight * (Math.abs(g.row(v) - g.row(target)) + Math.abs(g.column(v) - g.column(target)));
+    }
+}
@@ -1,9 +1,12 @@
 package game;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * An instance represents a Cavern that the explorer can navigate through.
@@ -15,50 +18,88 @@ public class Cavern {
     public static final int MAX_EDGE_WEIGHT = 15;
     public static final int MAX_GOLD_VALUE = 1000;
     public static final int TASTY_VALUE = 5000;
-    private static final double DENSITY = 0.6;
-    private static final double GOLD_PROBABILITY = 0.33;
+    static final double DENSITY = 0.6;
+    static final double GOLD_PROBABILITY = 0.33;
+    /**
+     * The least fraction of the interior cells that the dig of a CONSTRUCTIVE escape cavern
+     * must open to be kept. A dig either dies out within a few cells or spreads over about
+     * DENSITY of the grid, and the caverns kept in COMPATIBLE mode, which must reach the orb's
+     * tile, are almost never of the first kind.
+     */
+    static final double MIN_ESCAPE_FILL = 0.2;
     private final int rows;
     private final int cols;
     private final Set<Node> graph;
     private final Node entrance;
     private final Node target;
     private final Node[][] tiles;
-
     /**
-     * Constructor: an instance of size (rws, cls) .
-     * Use rand as a source of randomness for the cavern generation.
-     * Use {@code edgeWeightGenerator} and {@code goldGenerator} to generate edge weights and gold values.
-     * Precondition: {@code targetType} must be either {@code Tile.Type.ORB} or {@code Tile.Type.ENTRANCE}.
+     * All nodes of this cavern (open tiles and walls), indexed by id.
      */
-    private Cavern(int rws,
-                   int cls,
-                   Random rand,
-                   Supplier<Integer> edgeWeightGenerator,
-                   Supplier<Integer> goldGenerator,
-                   Tile.Type targetType) {
-        rows = rws;
-        cols = cls;
-
-        graph = generateGraph(rand, targetType, goldGenerator);
-
-        entrance = graph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get();
+    private final Node[] nodes;
+    /**
+     * The id to give the next node created for this cavern. Each cavern numbers
+     * its own nodes from 0, open tiles first, so ids are dense.
+     */
+    private int freshId;
+    /**
+     * A CSR snapshot of the graph, built on first use by {@code getCompactGraph()}.
+     */
+    private volatile CompactGraph compactGraph;
+    /**
+     * The distance from each open node (indexed by id) to the target,
+     * computed on first use by {@code distancesToTarget()}.
+     */
+    private volatile int[] distancesToTarget;
+    /**
+     * The distance from the entrance to each open node (indexed by id),
+     * computed on first use by {@code distancesFromEntrance()}.
+     */
+    private volatile int[] distancesFromEntrance;
 
-        target = graph.stream().filter((n) -> n.getTile().getType() == targetType).findAny().get();
+    /**
+     * Constructor: an instance with the open cells of dig, whose target is dig's target.
+     * Use {@code edgeWeightGenerator} to generate edge weights.
+     * Precondition: dig recorded its digging order, and {@code targetType} must be either
+     * {@code Tile.Type.ORB} or {@code Tile.Type.ENTRANCE} (in which case the target is the entrance).
+     */
+    private Cavern(CavernDig dig, Tile.Type targetType, IntSupplier edgeWeightGenerator) {
+        int targetCell = dig.targetCell();
+        rows = dig.rows;
+        cols = dig.cols;
 
-        // Set tiles for the floor and then add walls wherever floor is missing.
+        // Create the floor in digging order, so open nodes get ids 0..n-1,
+        // and then add walls wherever floor is missing.
         tiles = new Node[rows][cols];
-        for (Node node : graph) {
-            Tile t = node.getTile();
-            tiles[t.getRow()][t.getColumn()] = node;
+        Node[] open = new Node[dig.openCount];
+        Node targetNode = null;
+        for (int i = 0; i < dig.openCount; i++) {
+            int cell = dig.cellsInDigOrder[i];
+            Tile.Type type = Tile.Type.FLOOR;
+            if (i == 0) {
+                type = Tile.Type.ENTRANCE;
+            } else if (cell == targetCell) {
+                type = targetType;
+            }
+            int gold = dig.goldInDigOrder == null ? 0 : dig.goldInDigOrder[i];
+            open[i] = newNode(new Tile(cell / cols, cell % cols, gold, type));
+            tiles[cell / cols][cell % cols] = open[i];
+            if (cell == targetCell) {
+                targetNode = open[i];
+            }
         }
+        graph = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(open)));
+        entrance = open[0];
+        target = targetNode;
 
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
                 if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
+                    tiles[i][j] = newNode(new Tile(i, j, 0, Tile.Type.WALL));
                 }
             }
         }
+        nodes = indexById(tiles);
         createEdges(tiles, edgeWeightGenerator);
     }
 
@@ -70,37 +111,101 @@ public class Cavern {
      * {@code givenTiles} and edges are along the grid).
      * 2. {@code trgt} is a node in {@code givenGraph}.
      */
-    private Cavern(Set<Node> givenGraph, Node[][] givenTiles, Node trgt) {
+    /* package */ Cavern(Set<Node> givenGraph, Node[][] givenTiles, Node trgt) {
         tiles = givenTiles;
         rows = tiles.length;
         cols = tiles[0].length;
 
         graph = Collections.unmodifiableSet(givenGraph);
+        nodes = indexById(tiles);
+        freshId = nodes.length;
 
         entrance = graph.stream().filter((n) -> n.getTile().getType() == Tile.Type.ENTRANCE).findAny().get();
 
         target = trgt;
     }
 
+    /**
+     * Return a new node of this cavern with tile t and the next fresh id.
+     */
+    private Node newNode(Tile t) {
+        return new Node(freshId++, t);
+    }
+
+    /**
+     * Return an array of all nodes in tiles, indexed by id.
+     * Precondition: the ids of the nodes in {@code tiles} are 0..rows*cols-1.
+     */
+    private static Node[] indexById(Node[][] tiles) {
+        Node[] byId = new Node[tiles.length * tiles[0].length];
+        for (Node[] row : tiles) {
+            for (Node n : row) {
+                byId[(int) n.getId()] = n;
+            }
+        }
+        return byId;
+    }
+
     /**
      * Return a new random Cavern of size (rows, cols) with no gold.
      * All edges have weight 1, and an orb is a reasonable distance from the exit.
      * Use rand as a source of randomness for the cavern generation.
+     * This is {@code digExploreCavern(rows, cols, rand, DigMode.COMPATIBLE)}.
      */
     public static Cavern digExploreCavern(int rows, int cols, Random rand) {
-        int minOrbDist = minOrbDistance(rows, cols);
+        return digExploreCavern(rows, cols, rand, DigMode.COMPATIBLE);
+    }
+
+    /**
+     * Return a new random Cavern of size (rows, cols) with no gold, dug in the given mode.
+     * All edges have weight 1, and the orb is at least {@code minOrbDistance(rows, cols)}
+     * steps from the entrance.
+     * Use rand as a source of randomness for the cavern generation.
+     * <p>
+     * In COMPATIBLE mode, the orb is put on a random open tile, and the cavern is dug again
+     * until that tile is far enough away, giving the same cavern as always for a given rand.
+     * Only the cells of each attempt are dug, and the search for the orb stops as soon as it
+     * finds the orb or passes the minimum distance; nodes are built only for the cavern kept.
+     * In CONSTRUCTIVE mode, the orb is put on a random tile drawn from those far enough away,
+     * so a cavern is dug again only if it has no such tile at all.
+     */
+    public static Cavern digExploreCavern(int rows, int cols, Random rand, DigMode mode) {
+        return new Cavern(digExploreCells(rows, cols, rand, mode, true), Tile.Type.ORB, () -> 1);
+    }
 
-        Cavern cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
-        while (cavern.minPathLengthToTarget(cavern.getEntrance()) < minOrbDist) {
-            cavern = new Cavern(rows, cols, rand, () -> 1, () -> 0, Tile.Type.ORB);
+    /**
+     * Dig the cells of an explore cavern of size (rows, cols) using rand in the given mode, as
+     * {@code digExploreCavern} describes, and return the dig; its target is the orb.
+     * The digging order is recorded iff recordOrder is true.
+     */
+    static CavernDig digExploreCells(int rows, int cols, Random rand, DigMode mode, boolean recordOrder) {
+        int minOrbDist = minOrbDistance(rows, cols);
+        while (true) {
+            CavernDig dig;
+            if (mode == DigMode.COMPATIBLE) {
+                dig = new CavernDig(rows, cols, rand, null, Tile.Type.ORB, recordOrder);
+                boolean rejected = dig.distanceFromEntrance(dig.targetCell(), minOrbDist) < minOrbDist;
+                DigCounters.countExplore(rejected);
+                if (!rejected) {
+                    return dig;
+                }
+            } else {
+                // Dig without drawing a target, then draw the orb from the tiles far enough away.
+                dig = new CavernDig(rows, cols, rand, null, Tile.Type.ENTRANCE, recordOrder);
+                int orbCell = dig.randomCellAtDistance(minOrbDist, rand);
+                DigCounters.countExplore(orbCell == CavernDig.NONE);
+                if (orbCell != CavernDig.NONE) {
+                    dig.placeTarget(orbCell);
+                    return dig;
+                }
+            }
         }
-        return cavern;
     }
 
     /**
      * Return the minimum allowable path distance from the entrance to the orb.
      */
-    private static int minOrbDistance(int rows, int cols) {
+    static int minOrbDistance(int rows, int cols) {
         return (rows + cols) / 2;
     }
 
@@ -108,21 +213,80 @@ public class Cavern {
      * Return a new random Cavern of size (rows, cols) with random gold and edge weights.
      * It is guaranteed that (currentRow, currentCol}) will be an open floor cell.
      * Use rand as a source of randomness for the cavern generation.
+     * This is {@code digEscapeCavern(rows, cols, currentRow, currentCol, rand, DigMode.COMPATIBLE)}.
      */
     public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand) {
-        Supplier<Integer> edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
-        Supplier<Integer> goldGen = () -> Cavern.generateGoldValue(rand);
-        Cavern potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
-        while (potentialCavern.getTileAt(currentRow, currentCol).getType() != Tile.Type.FLOOR) {
-            potentialCavern = new Cavern(rows, cols, rand, edgeWeightGen, goldGen, Tile.Type.ENTRANCE);
+        return digEscapeCavern(rows, cols, currentRow, currentCol, rand, DigMode.COMPATIBLE);
+    }
+
+    /**
+     * Return a new random Cavern of size (rows, cols) with random gold and edge weights, dug in
+     * the given mode. It is guaranteed that (currentRow, currentCol) will be an open floor cell.
+     * Use rand as a source of randomness for the cavern generation.
+     * <p>
+     * In COMPATIBLE mode, the cavern is dug again until that tile happens to be floor, giving
+     * the same cavern as always for a given rand; nodes are built only for the cavern kept,
+     * and the edge weights of the others are drawn and dropped. In CONSTRUCTIVE mode, the cavern is
+     * dug again only while the dig dies out before opening MIN_ESCAPE_FILL of the interior, and
+     * if the tile is not open, a corridor is carved from it towards the entrance until it joins
+     * the open tiles.
+     * Throw an IllegalArgumentException in CONSTRUCTIVE mode if (currentRow, currentCol) is on
+     * an edge of the cavern, where only the entrance may be open.
+     */
+    public static Cavern digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand,
+                                         DigMode mode) {
+        IntSupplier edgeWeightGen = () -> rand.nextInt(MAX_EDGE_WEIGHT) + 1;
+        IntSupplier goldGen = () -> Cavern.generateGoldValue(rand);
+        if (mode == DigMode.CONSTRUCTIVE) {
+            int required = requiredEscapeCell(rows, cols, currentRow, currentCol);
+            while (true) {
+                CavernDig dig = new CavernDig(rows, cols, rand, goldGen, Tile.Type.ENTRANCE, true, required);
+                boolean rejected = diedOut(dig);
+                DigCounters.countEscape(rejected);
+                if (!rejected) {
+                    return new Cavern(dig, Tile.Type.ENTRANCE, edgeWeightGen);
+                }
+            }
+        }
+        int current = currentRow * cols + currentCol;
+        while (true) {
+            CavernDig dig = new CavernDig(rows, cols, rand, goldGen, Tile.Type.ENTRANCE, true);
+            boolean rejected = !CavernDig.get(dig.open, current) || current == dig.entranceCell;
+            DigCounters.countEscape(rejected);
+            if (!rejected) {
+                return new Cavern(dig, Tile.Type.ENTRANCE, edgeWeightGen);
+            }
+            // Draw the edge weights the thrown-away cavern would have had, to keep rand in step.
+            for (int k = dig.corridorCount(); k > 0; k--) {
+                edgeWeightGen.getAsInt();
+            }
         }
-        return potentialCavern;
+    }
+
+    /**
+     * Return true iff dig opened less than MIN_ESCAPE_FILL of the interior cells of its grid
+     * before any corridor was carved.
+     */
+    static boolean diedOut(CavernDig dig) {
+        return dig.dugCount() < MIN_ESCAPE_FILL * (dig.rows - 2) * (dig.cols - 2);
+    }
+
+    /**
+     * Return the cell (row * cols + column) of (currentRow, currentCol) in a cavern of size
+     * (rows, cols). Throw an IllegalArgumentException if it is on an edge of the cavern.
+     */
+    static int requiredEscapeCell(int rows, int cols, int currentRow, int currentCol) {
+        if (currentRow <= 0 || currentRow >= rows - 1 || currentCol <= 0 || currentCol >= cols - 1) {
+            throw new IllegalArgumentException("digEscapeCavern: (" + currentRow + ", " + currentCol
+                + ") is not inside a cavern of size " + rows + "x" + cols);
+        }
+        return currentRow * cols + currentCol;
     }
 
     /**
      * Return a randomly determined gold value for a given tile.
      */
-    private static int generateGoldValue(Random rand) {
+    static int generateGoldValue(Random rand) {
         if (rand.nextDouble() > GOLD_PROBABILITY) {
             return 0;
         }
@@ -136,6 +300,8 @@ public class Cavern {
 
     /**
      * Convert nodeStrList into a Cavern and return it.
+     * The nodes are given fresh dense ids in the order they appear in the list
+     * (so a list produced by {@code serialize()} keeps its ids), followed by the walls.
      * Precondition: The list of strings is of the format output by {@code serialize()}.
      */
     public static Cavern deserialize(List<String> nodeStrList) {
@@ -147,6 +313,7 @@ public class Cavern {
         long targetId = Long.parseLong(infoParts[1].split(":")[1]);
 
         Map<Long, Node> idToNode = new HashMap<>();
+        long freshId = 0;
         for (String nodeStr : nodeStrList) {
             if (!nodeStr.equals(extraInfo)) {
 
@@ -154,7 +321,7 @@ public class Cavern {
                 String[] splitInfo = nodeInfo.split(",");
 
                 long nodeId = Long.parseLong(splitInfo[0]);
-                Node n = new Node(nodeId,
+                Node n = new Node(freshId++,
                     new Tile(Integer.parseInt(splitInfo[1]),
                         Integer.parseInt(splitInfo[2]),
                         Integer.parseInt(splitInfo[3]),
@@ -186,7 +353,7 @@ public class Cavern {
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
                 if (tiles[i][j] == null) {
-                    tiles[i][j] = new Node(new Tile(i, j, 0, Tile.Type.WALL));
+                    tiles[i][j] = new Node(freshId++, new Tile(i, j, 0, Tile.Type.WALL));
                 }
             }
         }
@@ -194,130 +361,78 @@ public class Cavern {
     }
 
     /**
-     * Add edges to the grid of nodes, tiles, between adjacent non-wall tiles,
-     * using edgeWeightGenerator to get edge weights.
-     * Precondition: all elements of {@code tiles} are non-null and
-     * the grid of nodes has no edges.
+     * Read a Cavern in the format output by {@code serialize()} from in, in a single pass,
+     * and return it. The nodes are given fresh dense ids as {@code deserialize(List)} does.
+     * Unlike that method, the text is never held in memory: numbers are parsed straight from
+     * the characters, and nodes and edges are built as each line is read.
+     * Throw an IOException if the text is not in the format output by {@code serialize()}.
+     * The reader is not closed.
      */
-    private void createEdges(Node[][] tiles, Supplier<Integer> edgeWeightGenerator) {
-        for (int i = 0; i < tiles.length - 1; i++) {
-            for (int j = 0; j < tiles[i].length - 1; j++) {
-                Node node = tiles[i][j];
-                if (node.getTile().getType() == Tile.Type.WALL) {
-                    continue;
-                }
+    public static Cavern deserialize(Reader in) throws IOException {
+        return new CavernTextReader(in).read();
+    }
 
-                final Point p = new Point(i, j);
-                Stream.of(Direction.SOUTH, Direction.EAST)
-                    .map(Direction::getPoint)
-                    .map(p::add)
-                    .map((q) -> tiles[q.row][q.col])
-                    .filter((m) -> m.getTile().getType() != Tile.Type.WALL)
-                    .forEach((m) -> {
-                        int weight = edgeWeightGenerator.get();
-                        node.addEdge(new Edge(node, m, weight));
-                        m.addEdge(new Edge(m, node, weight));
-                    });
-            }
+    /**
+     * Read a Cavern in the format output by {@code serialize()} from file, as
+     * {@code deserialize(Reader)} does, and return it.
+     */
+    public static Cavern deserialize(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file)) {
+            return deserialize(in);
         }
     }
 
     /**
-     * Return true iff p is on the grid
+     * Read a cavern written by {@code writeBinary()} from file.
+     * The file is memory-mapped and read straight into nodes and edges.
+     * Throw an IOException if file is not a binary cavern file of a supported version.
      */
-    private boolean isValid(Point p) {
-        return p.row > 0 && p.row < rows - 1 &&
-            p.col > 0 && p.col < cols - 1;
+    public static Cavern readBinary(Path file) throws IOException {
+        return CavernBinaryFormat.read(file);
     }
 
     /**
-     * Generate a new random graph that fits within the grid and return the set of nodes.
-     * Use goldGenerator to generate gold.
-     * If targetType is not ENTRANCE, make the target be some random node that is
-     * not the entrance.
+     * Read a cavern from file, which may hold either the binary format of {@code writeBinary()}
+     * or the text format of {@code serialize()}.
      */
-    private Set<Node> generateGraph(Random rand,
-                                    Tile.Type targetType,
-                                    Supplier<Integer> goldGenerator) {
-        List<Node> nodes = new ArrayList<>();
-
-        Set<Point> pointsSeen = new HashSet<>();
-        Set<Point> openPoints = new HashSet<>();
-        Queue<Node> frontier = new ArrayDeque<>();
-
-        Point entrancePoint = getEntrancePoint(rand);
-        Node entrance = new Node(new Tile(entrancePoint.row, entrancePoint.col, 0, Tile.Type.ENTRANCE));
-        nodes.add(entrance);
-
-        pointsSeen.add(entrancePoint);
-        openPoints.add(entrancePoint);
-        frontier.add(entrance);
-        while (!frontier.isEmpty()) {
-            Node node = frontier.remove();
-            Point p = new Point(node.getTile().getRow(), node.getTile().getColumn());
-
-            // We want to make sure there's a way out if we can get one.
-            // This will prevent stupid degenerate graphs.
-            int existingExits = 0;
-            List<Point> newExits = new ArrayList<>();
-            for (Direction dir : Direction.values()) {
-                Point newPt = dir.getPoint().add(p);
-                if (isValid(newPt)) {
-                    if (openPoints.contains(newPt)) {
-                        existingExits++;
-                    } else if (pointsSeen.add(newPt)) {
-                        newExits.add(newPt);
-                    }
-                }
-            }
+    public static Cavern load(Path file) throws IOException {
+        if (CavernBinaryFormat.isBinary(file)) {
+            return CavernBinaryFormat.read(file);
+        }
+        return deserialize(file);
+    }
 
-            int nExits = newExits.size();
-            if (nExits > 0) {
-                double modifiedDensity;
-                Point forcedExit;
-                // Modify the density function so that the expected number of open exits
-                // is the same even though we're forcing something to be open.
-                if (existingExits < 2) {
-                    modifiedDensity = (nExits == 1 ? 0.0 : (nExits * DENSITY - 1) / (nExits - 1));
-                    forcedExit = newExits.get(rand.nextInt(newExits.size()));
-                } else {
-                    modifiedDensity = DENSITY;
-                    forcedExit = null;
+    /**
+     * Add edges to the grid of nodes, tiles, between adjacent non-wall tiles,
+     * using edgeWeightGenerator to get edge weights.
+     * Precondition: all elements of {@code tiles} are non-null and
+     * the grid of nodes has no edges.
+     */
+    private void createEdges(Node[][] tiles, IntSupplier edgeWeightGenerator) {
+        for (int i = 0; i < tiles.length - 1; i++) {
+            for (int j = 0; j < tiles[i].length - 1; j++) {
+                Node node = tiles[i][j];
+                if (node.getTile().getType() == Tile.Type.WALL) {
+                    continue;
                 }
-                newExits.stream()
-                    .filter((q) -> q.equals(forcedExit) || rand.nextDouble() < modifiedDensity)
-                    .peek(openPoints::add)
-                    .map((q) -> new Node(new Tile(q.row, q.col, goldGenerator.get(), Tile.Type.FLOOR)))
-                    .peek(frontier::add)
-                    .forEach(nodes::add);
+                // South, then east: the order edge weights have always been drawn in.
+                addCorridor(node, tiles[i + 1][j], edgeWeightGenerator);
+                addCorridor(node, tiles[i][j + 1], edgeWeightGenerator);
             }
         }
-
-        if (targetType != Tile.Type.ENTRANCE) {
-            // Grab a random tile that's not the entrance and make it the target.
-            int targetIdx = rand.nextInt(nodes.size() - 1) + 1;
-            nodes.get(targetIdx).getTile().setType(targetType);
-        }
-
-        return Collections.unmodifiableSet(new HashSet<>(nodes));
     }
 
     /**
-     * Randomly determine and return the entrance to the cavern
-     * (the only non-wall tile along an edge of the grid).
+     * If m is not a wall, join node and m with a pair of edges whose weight
+     * is drawn from edgeWeightGenerator.
      */
-    private Point getEntrancePoint(Random rand) {
-      return switch (rand.nextInt(4)) {
-        case 0 -> // North wall
-          new Point(rand.nextInt(rows - 2) + 1, 0);
-        case 1 -> // South wall
-          new Point(rand.nextInt(rows - 2) + 1, cols - 1);
-        case 2 -> // West wall
-          new Point(0, rand.nextInt(cols - 2) + 1);
-        case 3 -> // East wall
-          new Point(rows - 1, rand.nextInt(cols - 2) + 1);
-        default -> throw new IllegalStateException("Unexpected random value!");
-      };
+    private static void addCorridor(Node node, Node m, IntSupplier edgeWeightGenerator) {
+        if (m.getTile().getType() == Tile.Type.WALL) {
+            return;
+        }
+        int weight = edgeWeightGenerator.getAsInt();
+        node.addEdge(new Edge(node, m, weight));
+        m.addEdge(new Edge(m, node, weight));
     }
 
     /**
@@ -349,6 +464,20 @@ public class Cavern {
         return graph;
     }
 
+    /**
+     * Return an immutable compressed-sparse-row snapshot of the graph, whose vertices
+     * are the ids of the open nodes. The snapshot is built on the first call.
+     */
+    public CompactGraph getCompactGraph() {
+        CompactGraph g = compactGraph;
+        if (g == null) {
+            // A race here only builds two equal snapshots; CompactGraph is immutable.
+            g = CompactGraph.of(nodes, graph.size());
+            compactGraph = g;
+        }
+        return g;
+    }
+
     /**
      * Return the node corresponding to the entrance to the cavern.
      */
@@ -363,6 +492,14 @@ public class Cavern {
         return target;
     }
 
+    /**
+     * Return the open node with the given id.
+     * Precondition: 0 &lt;= {@code id} &lt; {@code numOpenTiles()}.
+     */
+    /* package */ Node getNodeById(int id) {
+        return nodes[id];
+    }
+
     /**
      * Return the Tile information for (r, c).
      * Precondition: ({@code r}, {@code c}) must be in the grid.
@@ -380,62 +517,108 @@ public class Cavern {
     }
 
     /**
-     * Package-private implementation of Dijkstra's algorithm that returns
-     * only the minimum distance between the given node and the target node for
-     * this cavern (no path).
-     * Precondition: {@code start} must be a node in this cavern.
+     * Return the minimum distance between the given node and the target node for
+     * this cavern (no path). The distances from every node to the target are computed
+     * together by {@code distancesToTarget()} on the first call, so later calls take
+     * constant time.
+     * Precondition: {@code start} must be a node in this cavern's graph.
      */
-    int minPathLengthToTarget(Node start) {
+    public int minPathLengthToTarget(Node start) {
+        return distancesToTarget()[(int) start.getId()];
+    }
 
-        InternalMinHeap<Node> frontier = new InternalMinHeap<>();
+    /**
+     * Return the minimum distance from the open node with the given id to the target,
+     * as {@code minPathLengthToTarget(Node)} does.
+     * Precondition: 0 &lt;= {@code id} &lt; {@code numOpenTiles()}.
+     */
+    /* package */ int minPathLengthToTarget(int id) {
+        return distancesToTarget()[id];
+    }
 
-        /** Contains an entry for each node in the Settled and Frontier sets. */
-        Map<Long, Integer> pathWeights = new HashMap<>();
+    /**
+     * Return the minimum distance between the entrance of this cavern and the given node
+     * (no path). As for {@code minPathLengthToTarget()}, the distances to every node are
+     * computed together on the first call, so later calls take constant time.
+     * Precondition: {@code end} must be a node in this cavern's graph.
+     */
+    public int minPathLengthFromEntrance(Node end) {
+        return distancesFromEntrance()[(int) end.getId()];
+    }
 
-        pathWeights.put(start.getId(), 0);
-        frontier.add(start, 0);
-        /// invariant: as in lecture notes
-        while (!frontier.isEmpty()) {
-            Node f = frontier.poll();
-            if (f.equals(target)) {
-                return pathWeights.get(f.getId());
+    /**
+     * Return the minimum distance from each open node (indexed by id) to the target,
+     * computing it on the first call. It is computed only once, however many threads ask.
+     */
+    private int[] distancesToTarget() {
+        int[] d = distancesToTarget;
+        if (d == null) {
+            synchronized (this) {
+                d = distancesToTarget;
+                if (d == null) {
+                    d = distancesFrom((int) target.getId());
+                    distancesToTarget = d;
+                }
             }
+        }
+        return d;
+    }
 
-            int nWeight = pathWeights.get(f.getId());
-
-            for (Edge e : f.getExits()) {
-                Node w = e.getOther(f);
-                int weightThroughN = nWeight + e.length();
-                Integer existingWeight = pathWeights.get(w.getId());
-                if (existingWeight == null) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.add(w, weightThroughN);
-                } else if (weightThroughN < existingWeight) {
-                    pathWeights.put(w.getId(), weightThroughN);
-                    frontier.changePriority(w, weightThroughN);
+    /**
+     * Return the minimum distance from the entrance to each open node (indexed by id),
+     * computing it on the first call. It is computed only once, however many threads ask.
+     */
+    private int[] distancesFromEntrance() {
+        int[] d = distancesFromEntrance;
+        if (d == null) {
+            synchronized (this) {
+                d = distancesFromEntrance;
+                if (d == null) {
+                    d = distancesFrom((int) entrance.getId());
+                    distancesFromEntrance = d;
                 }
             }
         }
-        throw new IllegalStateException("The above loop should always reach the desired location.");
+        return d;
+    }
+
+    /**
+     * Return the minimum distance from the open node with id source to every open
+     * node, indexed by id. The graph is undirected, so these are also the distances
+     * back to source. Edge weights are small integers, so this uses Dial's algorithm.
+     */
+    int[] distancesFrom(int source) {
+        return new DialShortestPaths(getCompactGraph()).distancesFrom(source);
     }
 
     /**
      * Serialize this cavern as a list of strings that can be written to a file.
+     * Nodes are listed in id order.
      * The list can be converted back into a {@code Cavern} using {@code deserialize()}.
      */
     public List<String> serialize() {
-        List<String> nodes = new ArrayList<>();
-        nodes.add(rows + ":" + cols + ",trgt:" + target.getId());
-        for (Node n : graph) {
+        List<String> lines = new ArrayList<>();
+        lines.add(rows + ":" + cols + ",trgt:" + target.getId());
+        for (int id = 0; id < graph.size(); id++) {
+            Node n = nodes[id];
             Tile t = n.getTile();
             String nodeStr = n.getId() + "," + t.getRow() + "," + t.getColumn() + "," + t.getGold() + "," + t.getType().name();
 
             String edges = n.getExits().stream()
                 .map((e) -> e.getOther(n).getId() + "-" + e.length())
                 .collect(Collectors.joining(","));
-            nodes.add(nodeStr + "=" + edges);
+            lines.add(nodeStr + "=" + edges);
         }
-        return nodes;
+        return lines;
+    }
+
+    /**
+     * Write this cavern to file in a compact, versioned binary format, replacing any existing file.
+     * It can be read back with {@code readBinary()} or {@code load()}; see
+     * {@code CavernBinaryFormat} for the layout.
+     */
+    public void writeBinary(Path file) throws IOException {
+        CavernBinaryFormat.write(this, file);
     }
 
     /**
@@ -459,10 +642,27 @@ public class Cavern {
         public Point getPoint() {
             return dir;
         }
+
+        /**
+         * Return the direction in which tile b lies from tile a.
+         * Throw an IllegalArgumentException if a and b are not adjacent on the grid.
+         */
+        public static Direction between(Tile a, Tile b) {
+            int dRow = b.getRow() - a.getRow();
+            int dCol = b.getColumn() - a.getColumn();
+            if (dCol == 0) {
+                if (dRow == -1) return NORTH;
+                if (dRow == 1) return SOUTH;
+            } else if (dRow == 0) {
+                if (dCol == 1) return EAST;
+                if (dCol == -1) return WEST;
+            }
+            throw new IllegalArgumentException("between: Tiles must be adjacent");
+        }
     }
 
     /**
-     * An instance is a point (row, col) on the grid.
+     * An instance is a step (row, col) on the grid, the offset of a Direction.
      */
     private static class Point {
         private final int row;
@@ -475,25 +675,5 @@ public class Cavern {
             row = r;
             col = c;
         }
-
-        /**
-         * Return a new point, which is p added to this point.
-         */
-        public Point add(Point p) {
-            return new Point(row + p.row, col + p.col);
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if (this == o) return true;
-            if (!(o instanceof Point)) return false;
-            Point p = (Point) o;
-            return p.row == row && p.col == col;
-        }
-
-        @Override
-        public int hashCode() {
-            return Objects.hash(row, col);
-        }
     }
 }
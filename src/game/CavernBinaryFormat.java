@@ -0,0 +1,206 @@
+package game;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static game.CavernDig.COLUMN_STEP;
+import static game.CavernDig.ROW_STEP;
+
+/**
+ * A versioned binary file format for caverns, written with NIO and read through a memory map.
+ * <p>
+ * All values are big-endian. A file holds a header followed by four sections, each with one
+ * entry per open node, in id order:
+ * <pre>
+ *     header     magic "TODC", version, rows, cols, open node count n, target id   (6 ints)
+ *     tiles      n ints: the cell of each node, row * cols + column
+ *     types      n bytes: the ordinal of each node's {@code Tile.Type}
+ *     gold       n shorts: the gold on each node
+ *     adjacency  n shorts: the length of each node's edge in each {@code Cavern.Direction},
+ *                one nibble per direction, NORTH in the highest; 0 where there is no edge
+ * </pre>
+ * An edge always joins a node to the one on the adjacent tile in its direction, so lengths
+ * are all that need to be stored. A cavern of n open nodes takes 24 + 9n bytes, and is read
+ * straight from the mapped file into nodes and edges, without any intermediate strings.
+ * Its grid may have at most max(MAX_ROWS * MAX_COLS, 64n) cells.
+ */
+final class CavernBinaryFormat {
+    /** "TODC": Temple Of Doom Cavern. */
+    static final int MAGIC = 0x544F4443;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 6 * Integer.BYTES;
+    private static final int BYTES_PER_NODE = Integer.BYTES + Byte.BYTES + Short.BYTES + Short.BYTES;
+    /**
+     * Walls are not stored, but reading a file still makes a node for every cell of its grid.
+     * A grid larger than the largest game cavern must therefore have an open node for every
+     * MAX_CELLS_PER_NODE cells, so that what a file makes is bounded by its length.
+     */
+    private static final int MAX_CELLS_PER_NODE = 64;
+
+    private CavernBinaryFormat() {
+    }
+
+    /**
+     * Write cavern to file, replacing any existing file.
+     * Throw an IllegalArgumentException if the cavern has gold, an edge length or a grid size
+     * that the format cannot hold.
+     */
+    static void write(Cavern cavern, Path file) throws IOException {
+        int rows = cavern.getRowCount();
+        int cols = cavern.getColumnCount();
+        int n = cavern.numOpenTiles();
+        if (!fits(rows, cols, n)) {
+            throw new IllegalArgumentException("write: a " + rows + "x" + cols
+                + " grid with " + n + " open tiles does not fit in the format");
+        }
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + BYTES_PER_NODE * n);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(cols).putInt(n)
+            .putInt((int) cavern.getTarget().getId());
+
+        for (int id = 0; id < n; id++) {
+            Tile t = cavern.getNodeById(id).getTile();
+            buf.putInt(t.getRow() * cols + t.getColumn());
+        }
+        for (int id = 0; id < n; id++) {
+            buf.put((byte) cavern.getNodeById(id).getTile().getType().ordinal());
+        }
+        for (int id = 0; id < n; id++) {
+            int gold = cavern.getNodeById(id).getTile().getGold();
+            if (gold > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("write: gold " + gold + " does not fit in the format");
+            }
+            buf.putShort((short) gold);
+        }
+        for (int id = 0; id < n; id++) {
+            Node node = cavern.getNodeById(id);
+            int lengths = 0;
+            for (int d = 0; d < Node.MAX_EXITS; d++) {
+                Edge e = node.getExit(d);
+                int length = (e == null ? 0 : e.length());
+                if (length < 0 || length > 0xF || (e != null && length == 0)) {
+                    throw new IllegalArgumentException("write: edge length " + length + " does not fit in the format");
+                }
+                lengths = (lengths << 4) | length;
+            }
+            buf.putShort((short) lengths);
+        }
+
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        }
+    }
+
+    /**
+     * Return true iff a grid of rows x cols cells with n open nodes is small enough for the format.
+     */
+    private static boolean fits(int rows, int cols, int n) {
+        long cells = (long) rows * cols;
+        return cells <= Constants.MAX_ROWS * Constants.MAX_COLS || cells <= (long) MAX_CELLS_PER_NODE * n;
+    }
+
+    /**
+     * Return true iff file starts with the magic number of this format.
+     */
+    static boolean isBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // keep reading until the magic number is in or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Read the cavern in file. Its open nodes keep their ids, and its walls follow on from them.
+     * Throw an IOException if file is not a cavern file of a supported version, or is damaged.
+     */
+    static Cavern read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(file + " is too short to be a cavern file");
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buf.getInt() != MAGIC) {
+                throw new IOException(file + " is not a cavern file");
+            }
+            int version = buf.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has cavern format version " + version
+                    + ", but only version " + VERSION + " is supported");
+            }
+            int rows = buf.getInt();
+            int cols = buf.getInt();
+            int n = buf.getInt();
+            int targetId = buf.getInt();
+            if (rows < 1 || cols < 1 || n < 1 || n > (long) rows * cols || targetId < 0 || targetId >= n
+                || channel.size() != HEADER_BYTES + (long) BYTES_PER_NODE * n || !fits(rows, cols, n)) {
+                throw new IOException(file + " has a damaged cavern header");
+            }
+            return read(buf, rows, cols, n, targetId, file);
+        }
+    }
+
+    /**
+     * Build the cavern whose sections start at the position of buf, as described by the header.
+     */
+    private static Cavern read(ByteBuffer buf, int rows, int cols, int n, int targetId, Path file)
+        throws IOException {
+        int tilesAt = HEADER_BYTES;
+        int typesAt = tilesAt + Integer.BYTES * n;
+        int goldAt = typesAt + Byte.BYTES * n;
+        int adjacencyAt = goldAt + Short.BYTES * n;
+        Tile.Type[] types = Tile.Type.values();
+
+        Node[][] tiles = new Node[rows][cols];
+        Node[] open = new Node[n];
+        for (int id = 0; id < n; id++) {
+            int cell = buf.getInt(tilesAt + Integer.BYTES * id);
+            int type = buf.get(typesAt + id);
+            if (cell < 0 || cell >= (long) rows * cols || type < 0 || type >= types.length
+                || types[type] == Tile.Type.WALL || tiles[cell / cols][cell % cols] != null) {
+                throw new IOException(file + " has a damaged tile for node " + id);
+            }
+            int gold = buf.getShort(goldAt + Short.BYTES * id);
+            open[id] = new Node(id, new Tile(cell / cols, cell % cols, gold, types[type]));
+            tiles[cell / cols][cell % cols] = open[id];
+        }
+
+        long freshId = n;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (tiles[i][j] == null) {
+                    tiles[i][j] = new Node(freshId++, new Tile(i, j, 0, Tile.Type.WALL));
+                }
+            }
+        }
+
+        for (int id = 0; id < n; id++) {
+            Node node = open[id];
+            int lengths = buf.getShort(adjacencyAt + Short.BYTES * id) & 0xFFFF;
+            for (int d = 0; d < Node.MAX_EXITS; d++) {
+                int length = (lengths >>> (4 * (Node.MAX_EXITS - 1 - d))) & 0xF;
+                if (length == 0) {
+                    continue;
+                }
+                int r = node.getTile().getRow() + ROW_STEP[d];
+                int c = node.getTile().getColumn() + COLUMN_STEP[d];
+                if (r < 0 || r >= rows || c < 0 || c >= cols || !tiles[r][c].getTile().getType().isOpen()) {
+                    throw new IOException(file + " has an edge from node " + id + " into a wall");
+                }
+                node.addEdge(new Edge(node, tiles[r][c], length));
+            }
+        }
+        return new Cavern(new HashSet<>(Arrays.asList(open)), tiles, open[targetId]);
+    }
+}
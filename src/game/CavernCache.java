@@ -0,0 +1,258 @@
+package game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * A local on-disk cache of the caverns generated from each seed, so that games replayed
+ * on the same seeds (a nightly regression run, or repeated benchmark runs) skip generation.
+ * <p>
+ * The cache is off unless it is enabled, either by {@code enable()} or by setting the system
+ * property {@value #DIR_PROPERTY} to a directory (and optionally {@value #MAX_BYTES_PROPERTY}
+ * to its size bound). Once it is on, {@code GameState} uses it for every seeded game.
+ * <p>
+ * Entries are keyed by the seed, by the {@code DigMode}, and by {@code GENERATOR_VERSION},
+ * which must be bumped whenever a change to generation changes the caverns a seed produces,
+ * so that stale entries are never read. Each entry is a pair of files in the binary format of
+ * {@code Cavern.writeBinary()}, written to a temporary file and moved into place, so that
+ * games running concurrently on the same cache never see half a file. A file that cannot be
+ * read is treated as a miss and replaced. When the files in the directory grow beyond the
+ * size bound, the least recently used are deleted until they take at most {@code EVICT_TO} of it.
+ * <p>
+ * The size of the files is counted once, when the cache is enabled, and then kept up to date in
+ * memory as files are written, so a store costs no more than writing its files. Only eviction
+ * lists the directory, and it then recounts the size, which catches up with files written or
+ * deleted by other processes sharing the directory. Because eviction frees a tenth of the bound,
+ * it runs about once every tenth of the bound's worth of stores, not on every store.
+ */
+public final class CavernCache {
+    /** The version of cavern generation; part of every key. */
+    static final int GENERATOR_VERSION = 3;
+    /** The system property naming the cache directory. */
+    public static final String DIR_PROPERTY = "templeofdoom.cavernCache";
+    /** The system property giving the size bound of the cache, in bytes. */
+    public static final String MAX_BYTES_PROPERTY = "templeofdoom.cavernCache.maxBytes";
+    /** The size bound used when none is given: about 6000 games' worth of caverns. */
+    public static final long DEFAULT_MAX_BYTES = 64L << 20;
+    private static final String SUFFIX = ".todc";
+    /** The fraction of the size bound that eviction brings the cache down to. */
+    private static final double EVICT_TO = 0.9;
+
+    private static volatile CavernCache current = fromProperties();
+
+    private final Path dir;
+    private final long maxBytes;
+    /** The bytes in the cache files, as far as this instance knows; guarded by this. */
+    private long totalBytes;
+
+    /**
+     * The two caverns of a game.
+     */
+    record Caverns(Cavern explore, Cavern escape) {
+    }
+
+    /**
+     * Constructor: a cache in dir bounded by maxBytes, whose files are counted now.
+     */
+    private CavernCache(Path dir, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        totalBytes = totalBytes(listFiles());
+    }
+
+    /**
+     * Cache the caverns of every game played from now on in dir, keeping the files
+     * there under maxBytes in total. Create dir if it does not exist.
+     */
+    public static void enable(Path dir, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("enable: the size bound must be positive");
+        }
+        Files.createDirectories(dir);
+        current = new CavernCache(dir, maxBytes);
+    }
+
+    /**
+     * Stop caching caverns. The files already in the cache are left alone.
+     */
+    public static void disable() {
+        current = null;
+    }
+
+    /**
+     * Return the cache configured by the system properties, or null if there is none.
+     */
+    private static CavernCache fromProperties() {
+        String dir = System.getProperty(DIR_PROPERTY);
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+        try {
+            long maxBytes = Long.parseLong(System.getProperty(MAX_BYTES_PROPERTY, Long.toString(DEFAULT_MAX_BYTES)));
+            Path path = Path.of(dir);
+            Files.createDirectories(path);
+            return new CavernCache(path, maxBytes);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Not caching caverns: couldn't use " + dir + " (" + e.getMessage() + ")");
+            return null;
+        }
+    }
+
+    /**
+     * A way of generating the caverns of a seed in a given mode.
+     */
+    @FunctionalInterface
+    interface Generator {
+        Caverns generate(long seed, DigMode mode);
+    }
+
+    /**
+     * Return the caverns for seed and mode: from the cache if it is on and holds them, and
+     * otherwise from generator, storing them in the cache if it is on.
+     */
+    static Caverns caverns(long seed, DigMode mode, Generator generator) {
+        CavernCache cache = current;
+        if (cache == null) {
+            return generator.generate(seed, mode);
+        }
+        Caverns caverns = cache.load(seed, mode);
+        if (caverns == null) {
+            caverns = generator.generate(seed, mode);
+            cache.store(seed, mode, caverns);
+        }
+        return caverns;
+    }
+
+    /**
+     * Return the file holding the explore (if explore is true) or escape cavern of seed and mode.
+     */
+    private Path fileOf(long seed, DigMode mode, boolean explore) {
+        return dir.resolve(String.format("v%d-%s-%016x-%s%s", GENERATOR_VERSION,
+            mode.name().toLowerCase(Locale.ROOT), seed, explore ? "explore" : "escape", SUFFIX));
+    }
+
+    /**
+     * Return the caverns of seed and mode, or null if they are not in the cache or cannot be read.
+     */
+    private Caverns load(long seed, DigMode mode) {
+        Path exploreFile = fileOf(seed, mode, true);
+        Path escapeFile = fileOf(seed, mode, false);
+        try {
+            Caverns caverns = new Caverns(Cavern.readBinary(exploreFile), Cavern.readBinary(escapeFile));
+            FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+            Files.setLastModifiedTime(exploreFile, now);
+            Files.setLastModifiedTime(escapeFile, now);
+            return caverns;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Store the caverns of seed and mode, then evict entries if the cache has outgrown its bound.
+     * Failing to store is not an error: the caverns are simply generated again next time.
+     */
+    private void store(long seed, DigMode mode, Caverns caverns) {
+        try {
+            long added = write(caverns.explore(), fileOf(seed, mode, true))
+                + write(caverns.escape(), fileOf(seed, mode, false));
+            boolean full;
+            synchronized (this) {
+                totalBytes += added;
+                full = totalBytes > maxBytes;
+            }
+            if (full) {
+                evict();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // The cache is only an optimisation; the game goes on without it.
+        }
+    }
+
+    /**
+     * Write cavern to file atomically, via a temporary file in the same directory, and return
+     * the number of bytes this adds to the cache (less any file it replaces).
+     */
+    private long write(Cavern cavern, Path file) throws IOException {
+        Path tmp = Files.createTempFile(dir, "tmp-", ".part");
+        try {
+            cavern.writeBinary(tmp);
+            long added = Files.size(tmp);
+            try {
+                added -= Files.size(file); // an unreadable file being replaced
+            } catch (NoSuchFileException e) {
+                // the usual case: nothing to replace
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return added;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Recount the cavern files and, if they take more than maxBytes, delete the least recently
+     * used until those left take at most EVICT_TO of it.
+     */
+    private synchronized void evict() throws IOException {
+        List<CachedFile> cached = listFiles();
+        long total = totalBytes(cached);
+        if (total > maxBytes) {
+            cached.sort(Comparator.comparingLong(CachedFile::lastUsed));
+            long target = (long) (maxBytes * EVICT_TO);
+            for (CachedFile f : cached) {
+                if (total <= target) {
+                    break;
+                }
+                Files.deleteIfExists(f.path());
+                total -= f.bytes();
+            }
+        }
+        totalBytes = total;
+    }
+
+    /**
+     * Return the cavern files in the cache directory, with their sizes and last uses.
+     */
+    private List<CachedFile> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(dir)) {
+            entries.filter((p) -> p.getFileName().toString().endsWith(SUFFIX)).forEach(files::add);
+        }
+        List<CachedFile> cached = new ArrayList<>(files.size());
+        for (Path p : files) {
+            try {
+                cached.add(new CachedFile(p, Files.size(p), Files.getLastModifiedTime(p).toMillis()));
+            } catch (NoSuchFileException e) {
+                // evicted by another process meanwhile
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Return the total size of files.
+     */
+    private static long totalBytes(List<CachedFile> files) {
+        long total = 0;
+        for (CachedFile f : files) {
+            total += f.bytes();
+        }
+        return total;
+    }
+
+    /**
+     * A file in the cache, its size and when it was last used.
+     */
+    private record CachedFile(Path path, long bytes, long lastUsed) {
+    }
+}
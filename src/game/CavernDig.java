@@ -0,0 +1,464 @@
+package game;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+/**
+ * The digging step of cavern generation, shared by {@code Cavern} and {@code CavernGrid}:
+ * which cells of a grid are open, the order they were opened in, their gold, and which
+ * of them is the target.
+ * <p>
+ * Starting from a random entrance on the edge of the grid, cells are taken from a frontier in
+ * the order they were opened, and each opens some of the interior cells around it that have
+ * not been looked at before, always opening at least one while it has fewer than two open
+ * neighbours. Cells are numbered row * cols + column, the open and the seen cells are kept in
+ * bitsets and the frontier in an IntQueue, so digging allocates nothing per cell.
+ */
+final class CavernDig {
+    /**
+     * Row and column offsets of the neighbouring cell in each {@code Cavern.Direction}, by ordinal.
+     */
+    static final int[] ROW_STEP = {-1, 0, 1, 0};
+    static final int[] COLUMN_STEP = {0, 1, 0, -1};
+    static final int NONE = -1;
+
+    final int rows;
+    final int cols;
+    /** Bit c is set iff cell c is open. */
+    final long[] open;
+    final int entranceCell;
+    /** The number of open cells. */
+    final int openCount;
+    /** The open cells in the order they were opened (the entrance first), or null if not recorded. */
+    final int[] cellsInDigOrder;
+    /** The gold of the open cells in the order they were opened, or null if there is no gold. */
+    final short[] goldInDigOrder;
+    /** The position of the target in the order the cells were opened (0 for the entrance). */
+    final int targetIndex;
+    /** The cell of the target if it was placed by {@code placeTarget()}, otherwise NONE. */
+    private int placedTarget = NONE;
+    /** Bit c is set iff cell c was looked at while digging; reused when replaying. */
+    private final long[] seen;
+    /** The cells opened after digging by carving a corridor, in order, or null if none were. */
+    private final int[] carvedInOrder;
+    /** Bit c is set iff cell c was carved; null if no cells were. */
+    private final long[] carved;
+
+    /**
+     * Constructor: dig a grid of size (rws, cls) using rand, drawing each open cell's gold from
+     * goldGenerator (none if it is null). If targetType is not ENTRANCE, draw a random open
+     * cell other than the entrance as the target. Record the order the cells were opened in
+     * iff recordOrder is true.
+     * This makes exactly the random draws, in exactly the order, that {@code Cavern} always has.
+     */
+    CavernDig(int rws, int cls, Random rand, IntSupplier goldGenerator, Tile.Type targetType, boolean recordOrder) {
+        this(rws, cls, rand, goldGenerator, targetType, recordOrder, NONE);
+    }
+
+    /**
+     * Constructor: dig a grid as {@code CavernDig(rws, cls, rand, goldGenerator, targetType, recordOrder)}
+     * does, but then, if requiredCell is not NONE and was not opened, carve a corridor from it
+     * towards the entrance until it meets an open cell, opening the cells of the corridor in
+     * that order (with gold from goldGenerator) after all the others.
+     * Precondition: requiredCell is NONE or an interior cell (not on an edge of the grid).
+     */
+    CavernDig(int rws, int cls, Random rand, IntSupplier goldGenerator, Tile.Type targetType, boolean recordOrder,
+              int requiredCell) {
+        if ((long) rws * cls > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("CavernDig: " + rws + "x" + cls + " has too many cells");
+        }
+        rows = rws;
+        cols = cls;
+        open = new long[wordCount(rows * cols)];
+        seen = new long[open.length];
+        IntQueue frontier = new IntQueue(rows + cols);
+        int[] cells = recordOrder ? new int[64] : null;
+        short[] gold = goldGenerator != null ? new short[64] : null;
+        int[] newExits = new int[ROW_STEP.length];
+
+        entranceCell = getEntranceCell(rand);
+        set(seen, entranceCell);
+        set(open, entranceCell);
+        frontier.add(entranceCell);
+        if (cells != null) {
+            cells[0] = entranceCell;
+        }
+        int dug = 1;
+        while (!frontier.isEmpty()) {
+            int p = frontier.poll();
+            int row = p / cols;
+            int col = p % cols;
+
+            // We want to make sure there's a way out if we can get one.
+            // This will prevent stupid degenerate graphs.
+            int existingExits = 0;
+            int nExits = 0;
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                int r = row + ROW_STEP[d];
+                int c = col + COLUMN_STEP[d];
+                if (r > 0 && r < rows - 1 && c > 0 && c < cols - 1) {
+                    int q = r * cols + c;
+                    if (get(open, q)) {
+                        existingExits++;
+                    } else if (!get(seen, q)) {
+                        set(seen, q);
+                        newExits[nExits++] = q;
+                    }
+                }
+            }
+
+            if (nExits > 0) {
+                double modifiedDensity;
+                int forcedExit;
+                // Modify the density function so that the expected number of open exits
+                // is the same even though we're forcing something to be open.
+                if (existingExits < 2) {
+                    modifiedDensity = (nExits == 1 ? 0.0 : (nExits * Cavern.DENSITY - 1) / (nExits - 1));
+                    forcedExit = newExits[rand.nextInt(nExits)];
+                } else {
+                    modifiedDensity = Cavern.DENSITY;
+                    forcedExit = NONE;
+                }
+                for (int i = 0; i < nExits; i++) {
+                    int q = newExits[i];
+                    if (q == forcedExit || rand.nextDouble() < modifiedDensity) {
+                        set(open, q);
+                        if (cells != null) {
+                            cells = put(cells, dug, q);
+                        }
+                        if (gold != null) {
+                            gold = put(gold, dug, (short) goldGenerator.getAsInt());
+                        }
+                        dug++;
+                        frontier.add(q);
+                    }
+                }
+            }
+        }
+
+        int[] corridor = null;
+        long[] carvedCells = null;
+        if (requiredCell != NONE && !get(open, requiredCell)) {
+            // Head for the open cell just inside the entrance, first along the column and then
+            // along the row, so the corridor stays inside the rectangle between two interior cells.
+            int join = interiorNeighbour(entranceCell);
+            corridor = new int[8];
+            carvedCells = new long[open.length];
+            int r = requiredCell / cols;
+            int c = requiredCell % cols;
+            int length = 0;
+            for (int q = requiredCell; !get(open, q); q = r * cols + c) {
+                set(open, q);
+                set(carvedCells, q);
+                corridor = put(corridor, length++, q);
+                if (cells != null) {
+                    cells = put(cells, dug, q);
+                }
+                if (gold != null) {
+                    gold = put(gold, dug, (short) goldGenerator.getAsInt());
+                }
+                dug++;
+                if (r != join / cols) {
+                    r += Integer.signum(join / cols - r);
+                } else {
+                    c += Integer.signum(join % cols - c);
+                }
+            }
+            corridor = Arrays.copyOf(corridor, length);
+        }
+        carvedInOrder = corridor;
+        carved = carvedCells;
+
+        openCount = dug;
+        cellsInDigOrder = cells;
+        goldInDigOrder = gold;
+        // Grab a random tile that's not the entrance and make it the target.
+        targetIndex = targetType == Tile.Type.ENTRANCE ? 0 : rand.nextInt(dug - 1) + 1;
+    }
+
+    /**
+     * Randomly determine and return the cell of the entrance to the cavern
+     * (the only open cell along an edge of the grid).
+     */
+    private int getEntranceCell(Random rand) {
+        return switch (rand.nextInt(4)) {
+            case 0 -> // North wall
+                (rand.nextInt(rows - 2) + 1) * cols;
+            case 1 -> // South wall
+                (rand.nextInt(rows - 2) + 1) * cols + cols - 1;
+            case 2 -> // West wall
+                rand.nextInt(cols - 2) + 1;
+            case 3 -> // East wall
+                (rows - 1) * cols + rand.nextInt(cols - 2) + 1;
+            default -> throw new IllegalStateException("Unexpected random value!");
+        };
+    }
+
+    /**
+     * Return the one neighbour of cell, a cell on an edge of the grid other than a corner,
+     * that is not on an edge.
+     */
+    private int interiorNeighbour(int cell) {
+        int row = cell / cols;
+        int col = cell % cols;
+        for (int d = 0; d < ROW_STEP.length; d++) {
+            int r = row + ROW_STEP[d];
+            int c = col + COLUMN_STEP[d];
+            if (r > 0 && r < rows - 1 && c > 0 && c < cols - 1) {
+                return r * cols + c;
+            }
+        }
+        throw new IllegalStateException("interiorNeighbour: " + cell + " has no interior neighbour");
+    }
+
+    /**
+     * Visit the open cells in the order they were opened, starting after the entrance,
+     * until visitor returns false, without needing cellsInDigOrder.
+     * <p>
+     * A cell is opened, if at all, when it is first looked at, so the open cells are reached
+     * in the order they were dug by looking at unseen cells in the same order again. The cells
+     * of a carved corridor were opened after digging, so they are passed over as if still closed
+     * and visited last.
+     */
+    void replay(OpenCellVisitor visitor) {
+        Arrays.fill(seen, 0);
+        IntQueue frontier = new IntQueue(rows + cols);
+        set(seen, entranceCell);
+        frontier.add(entranceCell);
+        int index = 0;
+        while (!frontier.isEmpty()) {
+            int p = frontier.poll();
+            int row = p / cols;
+            int col = p % cols;
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                int r = row + ROW_STEP[d];
+                int c = col + COLUMN_STEP[d];
+                if (r > 0 && r < rows - 1 && c > 0 && c < cols - 1) {
+                    int q = r * cols + c;
+                    if (!get(seen, q)) {
+                        set(seen, q);
+                        if (get(open, q) && (carved == null || !get(carved, q))) {
+                            index++;
+                            if (!visitor.visit(index, q)) {
+                                return;
+                            }
+                            frontier.add(q);
+                        }
+                    }
+                }
+            }
+        }
+        if (carvedInOrder != null) {
+            for (int q : carvedInOrder) {
+                index++;
+                if (!visitor.visit(index, q)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Visit the open cells in order of their distance from the entrance (every step between
+     * adjacent open cells has length 1), starting with the entrance, until visitor returns false.
+     */
+    void searchFromEntrance(DistanceVisitor visitor) {
+        Arrays.fill(seen, 0);
+        IntQueue frontier = new IntQueue(rows + cols);
+        set(seen, entranceCell);
+        frontier.add(entranceCell);
+        // The frontier holds one layer of cells, all at distance, followed by part of the next.
+        for (int distance = 0; !frontier.isEmpty(); distance++) {
+            for (int k = frontier.size(); k > 0; k--) {
+                int p = frontier.poll();
+                if (!visitor.visit(distance, p)) {
+                    return;
+                }
+                int row = p / cols;
+                int col = p % cols;
+                for (int d = 0; d < ROW_STEP.length; d++) {
+                    int r = row + ROW_STEP[d];
+                    int c = col + COLUMN_STEP[d];
+                    if (r >= 0 && r < rows && c >= 0 && c < cols) {
+                        int q = r * cols + c;
+                        if (get(open, q) && !get(seen, q)) {
+                            set(seen, q);
+                            frontier.add(q);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the number of steps on a shortest path from the entrance to cell, or limit if
+     * that is at least limit. The search stops as soon as it reaches cell or the limit.
+     */
+    int distanceFromEntrance(int cell, int limit) {
+        int[] found = {limit};
+        searchFromEntrance((distance, c) -> {
+            if (distance >= limit) {
+                return false;
+            }
+            if (c == cell) {
+                found[0] = distance;
+                return false;
+            }
+            return true;
+        });
+        return found[0];
+    }
+
+    /**
+     * Return an open cell drawn uniformly at random, using rand, from those at least
+     * minDistance steps from the entrance, or NONE (without drawing) if there are none.
+     */
+    int randomCellAtDistance(int minDistance, Random rand) {
+        int[] count = {0};
+        searchFromEntrance((distance, c) -> {
+            if (distance >= minDistance) {
+                count[0]++;
+            }
+            return true;
+        });
+        if (count[0] == 0) {
+            return NONE;
+        }
+        // Find the chosen cell by searching again, in the same order.
+        int[] remaining = {rand.nextInt(count[0])};
+        int[] chosen = {NONE};
+        searchFromEntrance((distance, c) -> {
+            if (distance >= minDistance && remaining[0]-- == 0) {
+                chosen[0] = c;
+                return false;
+            }
+            return true;
+        });
+        return chosen[0];
+    }
+
+    /**
+     * Return the number of cells opened by digging, not counting those carved afterwards.
+     */
+    int dugCount() {
+        return carvedInOrder == null ? openCount : openCount - carvedInOrder.length;
+    }
+
+    /**
+     * Return the number of corridors: pairs of open cells next to each other.
+     */
+    int corridorCount() {
+        int count = 0;
+        for (int w = 0; w < open.length; w++) {
+            for (long bits = open[w]; bits != 0; bits &= bits - 1) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                int col = cell % cols;
+                if (col < cols - 1 && get(open, cell + 1)) {
+                    count++;
+                }
+                if (cell / cols < rows - 1 && get(open, cell + cols)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Make the open cell cell the target, in place of the one drawn while digging.
+     */
+    void placeTarget(int cell) {
+        placedTarget = cell;
+    }
+
+    /**
+     * Return the cell of the target.
+     */
+    int targetCell() {
+        if (placedTarget != NONE) {
+            return placedTarget;
+        }
+        if (cellsInDigOrder != null) {
+            return cellsInDigOrder[targetIndex];
+        }
+        if (targetIndex == 0) {
+            return entranceCell;
+        }
+        int[] target = {NONE};
+        replay((index, cell) -> {
+            if (index == targetIndex) {
+                target[0] = cell;
+                return false;
+            }
+            return true;
+        });
+        return target[0];
+    }
+
+    /**
+     * A visitor of the open cells of a dig, each with its position in digging order.
+     */
+    @FunctionalInterface
+    interface OpenCellVisitor {
+        /**
+         * Visit the open cell that was opened index-th. Return true to go on to the next one.
+         */
+        boolean visit(int index, int cell);
+    }
+
+    /**
+     * A visitor of the open cells of a dig, each with its distance from the entrance.
+     */
+    @FunctionalInterface
+    interface DistanceVisitor {
+        /**
+         * Visit cell, which is distance steps from the entrance. Return true to go on to the next one.
+         */
+        boolean visit(int distance, int cell);
+    }
+
+    /**
+     * Return a, or a copy of a twice as long if it is full at i, with a[i] set to v.
+     */
+    private static int[] put(int[] a, int i, int v) {
+        if (i == a.length) {
+            a = Arrays.copyOf(a, i * 2);
+        }
+        a[i] = v;
+        return a;
+    }
+
+    /**
+     * Return a, or a copy of a twice as long if it is full at i, with a[i] set to v.
+     */
+    private static short[] put(short[] a, int i, short v) {
+        if (i == a.length) {
+            a = Arrays.copyOf(a, i * 2);
+        }
+        a[i] = v;
+        return a;
+    }
+
+    /**
+     * Return the number of longs needed for a bitset of bits bits.
+     */
+    static int wordCount(int bits) {
+        return (int) (((long) bits + 63) >>> 6);
+    }
+
+    /**
+     * Return true iff bit i of bitset bits is set.
+     */
+    static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Set bit i of bitset bits.
+     */
+    static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+}
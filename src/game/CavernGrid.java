@@ -0,0 +1,652 @@
+package game;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+import static game.CavernDig.*;
+
+/**
+ * A memory-efficient cavern, for caverns far larger than {@code Cavern} can hold.
+ * <p>
+ * A {@code Cavern} keeps a Node, a Tile and two HashSets for every cell, walls included,
+ * which limits it to a few hundred thousand cells. An instance of this class instead keeps:
+ * <ul>
+ * <li>one bit per cell, set for open cells, in row-major order;</li>
+ * <li>one int per 64 cells, counting the open cells before them, so that the open cells
+ * can be numbered 0..n-1 in row-major order and a cell's number found in constant time;</li>
+ * <li>for caverns with weighted edges, one byte per open cell, holding the lengths (at most
+ * {@code Cavern.MAX_EDGE_WEIGHT}) of the corridors south and east of it in its two nibbles;</li>
+ * <li>for caverns with gold, one short per open cell, holding its gold, and one bit per open
+ * cell, set once its gold has been picked up.</li>
+ * </ul>
+ * That is a little over one bit per cell for an explore cavern, and about 3.2 bytes per open
+ * cell for an escape cavern, so caverns of 10^8 cells fit in a few hundred megabytes.
+ * <p>
+ * Caverns are dug by {@code CavernDig}, as a {@code Cavern} is, with the same random draws in
+ * the same order, so a grid dug from a Random in a given state has the same walls, gold, edge
+ * lengths, entrance and target as the Cavern dug from a Random in that state. Only the
+ * numbering of open cells differs: it is row-major here, rather than in digging order.
+ * <p>
+ * Node objects for open cells are views, created only when asked for, by {@code getNode()},
+ * and not kept by the grid, so a walk over the whole cavern leaves behind no more nodes than
+ * the caller holds on to. Their edges are created when first used. Two views of the same tile
+ * are equal() but not ==. Their tiles read and take gold from the grid itself, so picking up
+ * gold through one view is seen by every other. The numbers of open cells are the ids of their
+ * nodes and the vertices of {@code getCompactGraph()}.
+ */
+public final class CavernGrid {
+    private final int rows;
+    private final int cols;
+    /** Bit c is set iff cell c (row * cols + column) is open. */
+    private final long[] open;
+    /** rankBefore[w] is the number of open cells in words 0..w-1 of open. */
+    private final int[] rankBefore;
+    private final int vertexCount;
+    /**
+     * For each open cell, the length of its corridor to the south (high nibble) and to the east
+     * (low nibble), or 0 where there is none. Null if every corridor has length 1.
+     */
+    private final byte[] weights;
+    /** The gold on each open cell when the cavern was dug. Null if there is no gold. */
+    private final short[] gold;
+    /** Bit v is set iff the gold on open tile v has been picked up. Null if there is no gold. */
+    private final long[] goldTaken;
+    private final int entranceCell;
+    private final int targetCell;
+    /**
+     * A CSR snapshot of the graph, built on first use by {@code getCompactGraph()}.
+     */
+    private volatile CompactGraph compactGraph;
+    /**
+     * The distance from each open cell (indexed by vertex) to the target,
+     * computed on first use by {@code distancesToTarget()}.
+     */
+    private volatile int[] distancesToTarget;
+
+    /**
+     * Constructor: an instance with the open cells, gold and target of dig. If escape is true,
+     * it is an escape cavern, whose edge lengths are drawn from rand as {@code Cavern} draws them;
+     * otherwise all of its edges have length 1 (and dig has no gold).
+     */
+    private CavernGrid(CavernDig dig, boolean escape, Random rand) {
+        rows = dig.rows;
+        cols = dig.cols;
+        open = dig.open;
+        entranceCell = dig.entranceCell;
+        targetCell = dig.targetCell();
+
+        rankBefore = new int[open.length];
+        int count = 0;
+        for (int w = 0; w < open.length; w++) {
+            rankBefore[w] = count;
+            count += Long.bitCount(open[w]);
+        }
+        vertexCount = count;
+
+        weights = escape ? new byte[vertexCount] : null;
+        if (escape) {
+            // The same corridors, in the same order, as Cavern.createEdges().
+            for (int i = 0; i < rows - 1; i++) {
+                for (int j = 0; j < cols - 1; j++) {
+                    int cell = i * cols + j;
+                    if (!get(open, cell)) {
+                        continue;
+                    }
+                    int v = vertexOf(cell);
+                    if (get(open, cell + cols)) {
+                        weights[v] |= (byte) ((rand.nextInt(Cavern.MAX_EDGE_WEIGHT) + 1) << 4);
+                    }
+                    if (get(open, cell + 1)) {
+                        weights[v] |= (byte) (rand.nextInt(Cavern.MAX_EDGE_WEIGHT) + 1);
+                    }
+                }
+            }
+        }
+
+        // Move the gold from digging order into row-major order.
+        gold = escape ? new short[vertexCount] : null;
+        goldTaken = escape ? new long[(vertexCount + 63) >>> 6] : null;
+        if (escape) {
+            dig.replay((index, cell) -> {
+                gold[vertexOf(cell)] = dig.goldInDigOrder[index];
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Return a new random grid of size (rows, cols) with no gold, exactly as
+     * {@code Cavern.digExploreCavern(rows, cols, rand)} would dig it.
+     * All edges have weight 1, and an orb is a reasonable distance from the exit.
+     */
+    public static CavernGrid digExploreCavern(int rows, int cols, Random rand) {
+        return digExploreCavern(rows, cols, rand, DigMode.COMPATIBLE);
+    }
+
+    /**
+     * Return a new random grid of size (rows, cols) with no gold, exactly as
+     * {@code Cavern.digExploreCavern(rows, cols, rand, mode)} would dig it.
+     */
+    public static CavernGrid digExploreCavern(int rows, int cols, Random rand, DigMode mode) {
+        return new CavernGrid(Cavern.digExploreCells(rows, cols, rand, mode, false), false, rand);
+    }
+
+    /**
+     * Return a new random grid of size (rows, cols) with random gold and edge weights,
+     * exactly as {@code Cavern.digEscapeCavern(rows, cols, currentRow, currentCol, rand)}
+     * would dig it. It is guaranteed that (currentRow, currentCol) will be an open floor cell.
+     */
+    public static CavernGrid digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand) {
+        return digEscapeCavern(rows, cols, currentRow, currentCol, rand, DigMode.COMPATIBLE);
+    }
+
+    /**
+     * Return a new random grid of size (rows, cols) with random gold and edge weights, exactly as
+     * {@code Cavern.digEscapeCavern(rows, cols, currentRow, currentCol, rand, mode)} would dig it.
+     */
+    public static CavernGrid digEscapeCavern(int rows, int cols, int currentRow, int currentCol, Random rand,
+                                             DigMode mode) {
+        if (mode == DigMode.CONSTRUCTIVE) {
+            int required = Cavern.requiredEscapeCell(rows, cols, currentRow, currentCol);
+            while (true) {
+                CavernDig dig = digEscapeCells(rows, cols, rand, required);
+                boolean rejected = Cavern.diedOut(dig);
+                DigCounters.countEscape(rejected);
+                if (!rejected) {
+                    return new CavernGrid(dig, true, rand);
+                }
+            }
+        }
+        int current = currentRow * cols + currentCol;
+        while (true) {
+            CavernDig dig = digEscapeCells(rows, cols, rand, NONE);
+            boolean rejected = !get(dig.open, current) || current == dig.entranceCell;
+            DigCounters.countEscape(rejected);
+            if (!rejected) {
+                return new CavernGrid(dig, true, rand);
+            }
+            // Draw the edge lengths the thrown-away grid would have had, to keep rand in step.
+            for (int k = dig.corridorCount(); k > 0; k--) {
+                rand.nextInt(Cavern.MAX_EDGE_WEIGHT);
+            }
+        }
+    }
+
+    /**
+     * Dig the cells of an escape grid of size (rows, cols) using rand exactly as {@code Cavern}
+     * digs them, carving a corridor from requiredCell if it is not NONE, and return the dig.
+     * The dig order is not kept: it would cost an int per open cell.
+     */
+    private static CavernDig digEscapeCells(int rows, int cols, Random rand, int requiredCell) {
+        return new CavernDig(rows, cols, rand, () -> Cavern.generateGoldValue(rand), Tile.Type.ENTRANCE, false,
+            requiredCell);
+    }
+
+    /**
+     * Return the number of rows in the grid.
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Return the number of columns in the grid.
+     */
+    public int getColumnCount() {
+        return cols;
+    }
+
+    /**
+     * Return the number of open tiles in this cavern, which are numbered 0..n-1.
+     */
+    public int numOpenTiles() {
+        return vertexCount;
+    }
+
+    /**
+     * Return true iff (r, c) is an open tile.
+     * Precondition: ({@code r}, {@code c}) must be in the grid.
+     */
+    public boolean isOpen(int r, int c) {
+        return get(open, r * cols + c);
+    }
+
+    /**
+     * Return the number of the entrance.
+     */
+    public int getEntrance() {
+        return vertexOf(entranceCell);
+    }
+
+    /**
+     * Return the number of the target (the orb, or the entrance in an escape cavern).
+     */
+    public int getTarget() {
+        return vertexOf(targetCell);
+    }
+
+    /**
+     * Return the number of the open tile at cell (row * columns + column).
+     * Precondition: the cell is open.
+     */
+    int vertexOf(int cell) {
+        int w = cell >>> 6;
+        return rankBefore[w] + Long.bitCount(open[w] & ((1L << cell) - 1));
+    }
+
+    /**
+     * Return the cell (row * columns + column) of open tile v.
+     * This takes time logarithmic in the size of the grid.
+     * Precondition: 0 &lt;= v &lt; numOpenTiles().
+     */
+    int cellOf(int v) {
+        // The word holding v is the last one with no more than v open cells before it.
+        int lo = 0;
+        int hi = rankBefore.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (rankBefore[mid] <= v) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        long bits = open[lo];
+        for (int k = v - rankBefore[lo]; k > 0; k--) {
+            bits &= bits - 1;
+        }
+        return (lo << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Return the cell next to cell in the direction with ordinal d if it is open, else -1.
+     */
+    int neighbourCell(int cell, int d) {
+        int r = cell / cols + ROW_STEP[d];
+        int c = cell % cols + COLUMN_STEP[d];
+        if (r < 0 || r >= rows || c < 0 || c >= cols) {
+            return NONE;
+        }
+        int q = r * cols + c;
+        return get(open, q) ? q : NONE;
+    }
+
+    /**
+     * Return the length of the corridor leaving open cell in the direction with ordinal d.
+     * Precondition: the cell in that direction is open.
+     */
+    int weight(int cell, int d) {
+        if (weights == null) {
+            return 1;
+        }
+        return switch (d) {
+            case 0 -> (weights[vertexOf(cell - cols)] >> 4) & 0xF; // NORTH: south of the cell above
+            case 1 -> weights[vertexOf(cell)] & 0xF;
+            case 2 -> (weights[vertexOf(cell)] >> 4) & 0xF;
+            case 3 -> weights[vertexOf(cell - 1)] & 0xF; // WEST: east of the cell to the left
+            default -> throw new IllegalArgumentException("weight: no direction " + d);
+        };
+    }
+
+    /**
+     * Return the row of cell.
+     */
+    int rowOf(int cell) {
+        return cell / cols;
+    }
+
+    /**
+     * Return the column of cell.
+     */
+    int columnOf(int cell) {
+        return cell % cols;
+    }
+
+    /**
+     * Return the gold on open tile v now.
+     * Precondition: 0 &lt;= v &lt; numOpenTiles().
+     */
+    public int goldAt(int v) {
+        return gold == null || get(goldTaken, v) ? 0 : gold[v];
+    }
+
+    /**
+     * Pick up the gold on open tile v, and return the amount picked up (0 if there was none).
+     * Precondition: 0 &lt;= v &lt; numOpenTiles().
+     */
+    int takeGold(int v) {
+        int g = goldAt(v);
+        if (g > 0) {
+            set(goldTaken, v);
+        }
+        return g;
+    }
+
+    /**
+     * Return a new view of the node for open tile v.
+     * Its edges, and the nodes at their other ends, are created when first used.
+     * Precondition: 0 &lt;= v &lt; numOpenTiles().
+     */
+    public Node getNode(int v) {
+        return createNode(v, cellOf(v));
+    }
+
+    /**
+     * Return a new view of the node for the open tile at cell.
+     */
+    Node getNodeAtCell(int cell) {
+        return createNode(vertexOf(cell), cell);
+    }
+
+    /**
+     * Return a new view of the node for open tile v, at cell.
+     */
+    private Node createNode(int v, int cell) {
+        Tile.Type type = Tile.Type.FLOOR;
+        if (cell == entranceCell) {
+            type = Tile.Type.ENTRANCE;
+        } else if (cell == targetCell) {
+            type = Tile.Type.ORB;
+        }
+        Tile t = new GridTile(rowOf(cell), columnOf(cell), gold == null ? 0 : gold[v], type, v);
+        return new GridNode(v, t, this, cell);
+    }
+
+    /**
+     * Return a view of the nodes of all open tiles, in order of their number.
+     * A new view of each node is created as the collection is iterated.
+     */
+    public Collection<Node> getGraph() {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<Node> iterator() {
+                return new Iterator<>() {
+                    private int v;
+                    private int w;
+                    private long bits = open.length == 0 ? 0 : open[0];
+
+                    @Override
+                    public boolean hasNext() {
+                        return v < vertexCount;
+                    }
+
+                    @Override
+                    public Node next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        while (bits == 0) {
+                            bits = open[++w];
+                        }
+                        int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                        bits &= bits - 1;
+                        return createNode(v++, cell);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return vertexCount;
+            }
+        };
+    }
+
+    /**
+     * Return an immutable compressed-sparse-row snapshot of the graph, whose vertices
+     * are the numbers of the open tiles. The snapshot is built on the first call.
+     */
+    public CompactGraph getCompactGraph() {
+        CompactGraph g = compactGraph;
+        if (g == null) {
+            // A race here only builds two equal snapshots; CompactGraph is immutable.
+            g = buildCompactGraph();
+            compactGraph = g;
+        }
+        return g;
+    }
+
+    /**
+     * Build a CSR snapshot of the graph straight from the bitset, without creating nodes.
+     */
+    private CompactGraph buildCompactGraph() {
+        int[] offsets = new int[vertexCount + 1];
+        int[] rowOf = new int[vertexCount];
+        int[] columnOf = new int[vertexCount];
+        int edgeCount = 0;
+        int v = 0;
+        for (int w = 0; w < open.length; w++) {
+            for (long bits = open[w]; bits != 0; bits &= bits - 1) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                offsets[v] = edgeCount;
+                rowOf[v] = rowOf(cell);
+                columnOf[v] = columnOf(cell);
+                for (int d = 0; d < ROW_STEP.length; d++) {
+                    if (neighbourCell(cell, d) != NONE) {
+                        edgeCount++;
+                    }
+                }
+                v++;
+            }
+        }
+        offsets[vertexCount] = edgeCount;
+
+        int[] targets = new int[edgeCount];
+        int[] lengths = new int[edgeCount];
+        int k = 0;
+        for (int w = 0; w < open.length; w++) {
+            for (long bits = open[w]; bits != 0; bits &= bits - 1) {
+                int cell = (w << 6) + Long.numberOfTrailingZeros(bits);
+                for (int d = 0; d < ROW_STEP.length; d++) {
+                    int q = neighbourCell(cell, d);
+                    if (q != NONE) {
+                        targets[k] = vertexOf(q);
+                        lengths[k] = weight(cell, d);
+                        k++;
+                    }
+                }
+            }
+        }
+        return new CompactGraph(offsets, targets, lengths, rowOf, columnOf);
+    }
+
+    /**
+     * Return the minimum distance between open tile v and the target.
+     * In a cavern whose corridors all have length 1, this is a breadth-first search over the
+     * bitset that stops on reaching the target, so it builds neither nodes nor a CompactGraph.
+     * Otherwise the distances from every tile to the target are computed together on the
+     * first call, straight from the bitset, so later calls take constant time.
+     */
+    public int minPathLengthToTarget(int v) {
+        if (weights == null) {
+            return unitPathLength(cellOf(v), targetCell);
+        }
+        return distancesToTarget()[v];
+    }
+
+    /**
+     * Return the minimum distance from each open tile (indexed by number) to the target,
+     * computing it on the first call. It is computed only once, however many threads ask.
+     */
+    private int[] distancesToTarget() {
+        int[] d = distancesToTarget;
+        if (d == null) {
+            synchronized (this) {
+                d = distancesToTarget;
+                if (d == null) {
+                    d = distancesFromTarget();
+                    distancesToTarget = d;
+                }
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Return the minimum distance from the target to each open tile, indexed by number.
+     * <p>
+     * This is Dial's algorithm, as in {@code DialShortestPaths}, but run straight over the bitset
+     * so that it needs neither a CompactGraph nor per-vertex links: each bucket is a queue of
+     * cells, and a cell that is reached again by a shorter route is simply queued again, its
+     * earlier entry being skipped when it comes up. Beyond the result, it needs memory only for
+     * the cells queued at any one time.
+     */
+    private int[] distancesFromTarget() {
+        int[] dist = new int[vertexCount];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        IntQueue[] buckets = new IntQueue[Cavern.MAX_EDGE_WEIGHT + 1];
+        for (int b = 0; b < buckets.length; b++) {
+            buckets[b] = new IntQueue(rows + cols);
+        }
+
+        dist[vertexOf(targetCell)] = 0;
+        buckets[0].add(targetCell);
+        int queued = 1;
+        for (int distance = 0; queued > 0; distance++) {
+            IntQueue bucket = buckets[distance % buckets.length];
+            while (!bucket.isEmpty()) {
+                int p = bucket.poll();
+                queued--;
+                if (dist[vertexOf(p)] != distance) {
+                    continue; // p was queued again at a shorter distance, and has been settled
+                }
+                for (int d = 0; d < ROW_STEP.length; d++) {
+                    int q = neighbourCell(p, d);
+                    if (q == NONE) {
+                        continue;
+                    }
+                    int dq = distance + weight(p, d);
+                    int v = vertexOf(q);
+                    if (dq < dist[v]) {
+                        dist[v] = dq;
+                        buckets[dq % buckets.length].add(q);
+                        queued++;
+                    }
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Return the number of corridors on a shortest route from cell from to cell to,
+     * or Integer.MAX_VALUE if there is none.
+     */
+    private int unitPathLength(int from, int to) {
+        long[] reached = new long[open.length];
+        IntQueue queue = new IntQueue(rows + cols);
+        set(reached, from);
+        queue.add(from);
+        // Search one layer of equally distant cells at a time.
+        for (int distance = 0; !queue.isEmpty(); distance++) {
+            for (int remaining = queue.size(); remaining > 0; remaining--) {
+                int p = queue.poll();
+                if (p == to) {
+                    return distance;
+                }
+                for (int d = 0; d < ROW_STEP.length; d++) {
+                    int q = neighbourCell(p, d);
+                    if (q != NONE && !get(reached, q)) {
+                        set(reached, q);
+                        queue.add(q);
+                    }
+                }
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * The tile of a view of a node, whose gold is kept by the grid.
+     */
+    private final class GridTile extends Tile {
+        private final int v;
+
+        /**
+         * Constructor: the tile of open tile v, at (r, c), with gold g when dug, and of type t.
+         */
+        GridTile(int r, int c, int g, Type t, int v) {
+            super(r, c, g, t);
+            this.v = v;
+        }
+
+        @Override
+        public int getGold() {
+            return goldAt(v);
+        }
+
+        @Override
+        public int takeGold() {
+            return CavernGrid.this.takeGold(v);
+        }
+    }
+
+    /**
+     * A node of a CavernGrid, whose edges are created from the grid when first used.
+     */
+    private static final class GridNode extends Node {
+        private final CavernGrid grid;
+        private final int cell;
+        private boolean edgesCreated;
+
+        /**
+         * Constructor: the node with id v and tile t, for the given cell of grid.
+         */
+        GridNode(int v, Tile t, CavernGrid grid, int cell) {
+            super(v, t);
+            this.grid = grid;
+            this.cell = cell;
+        }
+
+        /**
+         * Add this node's edges, creating the nodes at their other ends, if not already done.
+         */
+        private void createEdges() {
+            if (edgesCreated) {
+                return;
+            }
+            edgesCreated = true;
+            for (int d = 0; d < ROW_STEP.length; d++) {
+                int q = grid.neighbourCell(cell, d);
+                if (q != NONE) {
+                    addEdge(new Edge(this, grid.getNodeAtCell(q), grid.weight(cell, d)));
+                }
+            }
+        }
+
+        @Override
+        public Edge getEdge(Node q) {
+            createEdges();
+            return super.getEdge(q);
+        }
+
+        @Override
+        public Edge getExit(Cavern.Direction d) {
+            createEdges();
+            return super.getExit(d);
+        }
+
+        @Override
+        public Edge getExit(int slot) {
+            createEdges();
+            return super.getExit(slot);
+        }
+
+        @Override
+        public Set<Edge> getExits() {
+            createEdges();
+            return super.getExits();
+        }
+
+        @Override
+        public Set<Node> getNeighbours() {
+            createEdges();
+            return super.getNeighbours();
+        }
+    }
+}
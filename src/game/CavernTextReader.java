@@ -0,0 +1,284 @@
+package game;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single-pass reader for the text format written by {@code Cavern.serialize()}.
+ * <p>
+ * Characters are read through a buffer of its own, and numbers are parsed from them directly,
+ * so no line is ever held as a String or split. Each node is created as soon as its line is
+ * read. An edge to a node that has not been read yet waits in a table of pending edges, keyed
+ * by the id of that node, until the node turns up. The memory needed is therefore proportional
+ * to the graph being built, not to the size of the text.
+ */
+final class CavernTextReader {
+    private static final int BUFFER_SIZE = 1 << 14;
+    private static final int EOF = -1;
+
+    private final Reader in;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int line = 1;
+    /** A scratch buffer for the name of a tile type. */
+    private final char[] word = new char[16];
+
+    /**
+     * An edge read from line srcLine, that of node src, to a node that had not been read yet.
+     */
+    private record PendingEdge(Node src, int weight, int srcLine) {
+    }
+
+    /**
+     * Constructor: a reader of the text in in, which it does not close.
+     */
+    CavernTextReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Read a cavern from the text. Its nodes are given fresh dense ids in the order they
+     * appear, followed by the walls, just as {@code Cavern.deserialize(List)} does.
+     * Throw an IOException if the text is not in the format written by {@code Cavern.serialize()}.
+     */
+    Cavern read() throws IOException {
+        // The header: rows:cols,trgt:id
+        int rows = readInt();
+        expect(':');
+        int cols = readInt();
+        expect(',');
+        skipPast(':');
+        long targetId = readLong();
+        endLine();
+
+        Node[][] tiles = new Node[rows][cols];
+        Map<Long, Node> idToNode = new HashMap<>();
+        Map<Long, List<PendingEdge>> pending = new HashMap<>();
+        Tile.Type[] types = Tile.Type.values();
+        long freshId = 0;
+        while (peek() != EOF) {
+            if (peek() == '\n' || peek() == '\r') {
+                endLine(); // tolerate blank lines, such as one at the end of the file
+                continue;
+            }
+            // A node: id,row,col,gold,TYPE=other-weight,other-weight,...
+            long nodeId = readLong();
+            expect(',');
+            int row = readInt();
+            expect(',');
+            int col = readInt();
+            expect(',');
+            int gold = readInt();
+            expect(',');
+            Tile.Type type = readType(types);
+            expect('=');
+            if (row < 0 || row >= rows || col < 0 || col >= cols || tiles[row][col] != null) {
+                throw error("node " + nodeId + " is not on a free tile of the grid");
+            }
+            Node n = new Node(freshId++, new Tile(row, col, gold, type));
+            tiles[row][col] = n;
+            if (idToNode.put(nodeId, n) != null) {
+                throw error("node " + nodeId + " appears twice");
+            }
+
+            while (peek() != EOF && peek() != '\n' && peek() != '\r') {
+                long otherId = readLong();
+                expect('-');
+                int weight = readInt();
+                Node other = idToNode.get(otherId);
+                if (other != null) {
+                    addEdge(n, other, weight, line);
+                } else {
+                    pending.computeIfAbsent(otherId, (k) -> new ArrayList<>()).add(new PendingEdge(n, weight, line));
+                }
+                if (peek() == ',') {
+                    next();
+                }
+            }
+            endLine();
+
+            List<PendingEdge> waiting = pending.remove(nodeId);
+            if (waiting != null) {
+                for (PendingEdge e : waiting) {
+                    addEdge(e.src(), n, e.weight(), e.srcLine());
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            throw new IOException("Edges lead to nodes that are not in the cavern: " + pending.keySet());
+        }
+        Node target = idToNode.get(targetId);
+        if (target == null) {
+            throw new IOException("The target " + targetId + " is not in the cavern");
+        }
+
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (tiles[i][j] == null) {
+                    tiles[i][j] = new Node(freshId++, new Tile(i, j, 0, Tile.Type.WALL));
+                }
+            }
+        }
+        return new Cavern(new HashSet<>(idToNode.values()), tiles, target);
+    }
+
+    /**
+     * Add an edge of weight weight from src to dst, read on line srcLine.
+     * Throw an IOException naming that line if the tiles of src and dst are not adjacent.
+     */
+    private static void addEdge(Node src, Node dst, int weight, int srcLine) throws IOException {
+        Tile a = src.getTile();
+        Tile b = dst.getTile();
+        try {
+            Cavern.Direction.between(a, b);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Line " + srcLine + ": an edge joins tiles (" + a.getRow() + ", " + a.getColumn()
+                + ") and (" + b.getRow() + ", " + b.getColumn() + "), which are not adjacent", e);
+        }
+        src.addEdge(new Edge(src, dst, weight));
+    }
+
+    /**
+     * Read the name of a tile type, up to the next '=', and return that type.
+     */
+    private Tile.Type readType(Tile.Type[] types) throws IOException {
+        int length = 0;
+        while (peek() != '=' && peek() != EOF && length < word.length) {
+            word[length++] = (char) next();
+        }
+        for (Tile.Type t : types) {
+            String name = t.name();
+            if (name.length() == length) {
+                int i = 0;
+                while (i < length && name.charAt(i) == word[i]) {
+                    i++;
+                }
+                if (i == length) {
+                    return t;
+                }
+            }
+        }
+        throw error("unknown tile type " + new String(word, 0, length));
+    }
+
+    /**
+     * Read a non-negative int written in decimal.
+     */
+    private int readInt() throws IOException {
+        long value = readLong();
+        if (value > Integer.MAX_VALUE) {
+            throw error(value + " is too large");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Read a non-negative long written in decimal.
+     */
+    private long readLong() throws IOException {
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw error("expected a number but found " + describe(c));
+        }
+        long value = 0;
+        while (c >= '0' && c <= '9') {
+            if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                throw error("number is too large");
+            }
+            value = value * 10 + (c - '0');
+            next();
+            c = peek();
+        }
+        return value;
+    }
+
+    /**
+     * Read the character c.
+     */
+    private void expect(char c) throws IOException {
+        int found = next();
+        if (found != c) {
+            throw error("expected '" + c + "' but found " + describe(found));
+        }
+    }
+
+    /**
+     * Skip every character up to and including the next c.
+     */
+    private void skipPast(char c) throws IOException {
+        int found;
+        do {
+            found = next();
+        } while (found != c && found != EOF);
+        if (found == EOF) {
+            throw error("expected '" + c + "' but found the end of the text");
+        }
+    }
+
+    /**
+     * Read the end of a line: "\n", "\r\n" or the end of the text.
+     */
+    private void endLine() throws IOException {
+        if (peek() == '\r') {
+            next();
+        }
+        int c = next();
+        if (c != '\n' && c != EOF) {
+            throw error("expected the end of the line but found " + describe(c));
+        }
+        line++;
+    }
+
+    /**
+     * Return the next character without reading it, or EOF at the end of the text.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position];
+    }
+
+    /**
+     * Read and return the next character, or EOF at the end of the text.
+     */
+    private int next() throws IOException {
+        if (position == limit && !fill()) {
+            return EOF;
+        }
+        return buffer[position++];
+    }
+
+    /**
+     * Refill the buffer. Return false iff the text has ended.
+     */
+    private boolean fill() throws IOException {
+        int n;
+        do {
+            n = in.read(buffer, 0, buffer.length);
+        } while (n == 0);
+        if (n < 0) {
+            return false;
+        }
+        position = 0;
+        limit = n;
+        return true;
+    }
+
+    private static String describe(int c) {
+        return c == EOF ? "the end of the text" : "'" + (char) c + "'";
+    }
+
+    /**
+     * Return an exception for a syntax error on the current line.
+     */
+    private IOException error(String message) {
+        return new IOException("Line " + line + ": " + message);
+    }
+}
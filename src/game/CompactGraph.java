@@ -0,0 +1,135 @@
+package game;
+
+/**
+ * An immutable compressed-sparse-row (CSR) snapshot of the open tiles of a cavern.
+ * <p>
+ * Vertices are the node ids 0..n-1 of the cavern's open tiles. The edges leaving
+ * vertex v are numbered {@code offset(v)} .. {@code offset(v + 1) - 1}; edge k goes to
+ * vertex {@code target(k)} and has length {@code weight(k)}. The edges of a vertex are
+ * listed in {@code Cavern.Direction} order. Every corridor appears once in each direction.
+ * <p>
+ * Traversing the snapshot touches only a handful of flat int arrays, so graph searches
+ * over it neither chase pointers through Node and Edge objects nor allocate iterators.
+ * For example:
+ * <pre>
+ *     for (int k = g.offset(v), end = g.offset(v + 1); k &lt; end; k++) {
+ *         relax(g.target(k), dist[v] + g.weight(k));
+ *     }
+ * </pre>
+ */
+public final class CompactGraph {
+    /**
+     * offsets[v]..offsets[v+1]-1 index the edges of vertex v in targets and weights.
+     */
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    /**
+     * Grid coordinates of each vertex.
+     */
+    private final int[] rows;
+    private final int[] columns;
+
+    /**
+     * Constructor: a snapshot of the given arrays, which this instance takes ownership of.
+     */
+    /* package */ CompactGraph(int[] offsets, int[] targets, int[] weights, int[] rows, int[] columns) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    /**
+     * Build a snapshot of the open tiles of a cavern whose nodes, indexed by id, are given.
+     * Precondition: the open nodes have ids 0..nodeCount-1.
+     */
+    /* package */ static CompactGraph of(Node[] nodesById, int nodeCount) {
+        int[] offsets = new int[nodeCount + 1];
+        int[] rows = new int[nodeCount];
+        int[] columns = new int[nodeCount];
+        int edgeCount = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            Tile t = nodesById[v].getTile();
+            rows[v] = t.getRow();
+            columns[v] = t.getColumn();
+            edgeCount += nodesById[v].getExits().size();
+        }
+
+        int[] targets = new int[edgeCount];
+        int[] weights = new int[edgeCount];
+        int k = 0;
+        for (int v = 0; v < nodeCount; v++) {
+            offsets[v] = k;
+            Node n = nodesById[v];
+            for (int d = 0; d < Node.MAX_EXITS; d++) {
+                Edge e = n.getExit(d);
+                if (e != null) {
+                    targets[k] = (int) e.getOther(n).getId();
+                    weights[k] = e.length();
+                    k++;
+                }
+            }
+        }
+        offsets[nodeCount] = k;
+        return new CompactGraph(offsets, targets, weights, rows, columns);
+    }
+
+    /**
+     * Return the number of vertices (open tiles) in this graph.
+     */
+    public int vertexCount() {
+        return rows.length;
+    }
+
+    /**
+     * Return the number of directed edges in this graph (twice the number of corridors).
+     */
+    public int edgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Return the index of the first edge leaving v. The edges leaving v end just before
+     * {@code offset(v + 1)}; {@code offset(vertexCount())} is {@code edgeCount()}.
+     */
+    public int offset(int v) {
+        return offsets[v];
+    }
+
+    /**
+     * Return the number of edges leaving v.
+     */
+    public int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    /**
+     * Return the vertex that edge k leads to.
+     */
+    public int target(int k) {
+        return targets[k];
+    }
+
+    /**
+     * Return the length of edge k.
+     */
+    public int weight(int k) {
+        return weights[k];
+    }
+
+    /**
+     * Return the grid row of vertex v.
+     */
+    public int row(int v) {
+        return rows[v];
+    }
+
+    /**
+     * Return the grid column of vertex v.
+     */
+    public int column(int v) {
+        return columns[v];
+    }
+}
@@ -2,10 +2,10 @@ package game;
 
 public final class Constants {
     public static final double MAX_BONUS = 1.3;
-    static final int MIN_ROWS = 8;
-    static final int MAX_ROWS = 25;
-    static final int MIN_COLS = 12;
-    static final int MAX_COLS = 40;
+    public static final int MIN_ROWS = 8;
+    public static final int MAX_ROWS = 25;
+    public static final int MIN_COLS = 12;
+    public static final int MAX_COLS = 40;
     static final double MIN_BONUS = 1.0;
     static final double EXTRA_TIME_FACTOR = 0.3;     //bigger is nicer - addition to total multiplier
     static final double NO_BONUS_LENGTH = 3;
@@ -0,0 +1,134 @@
+package game;
+
+import java.util.Arrays;
+
+/**
+ * Single-source shortest paths over a {@code CompactGraph} with Dial's algorithm.
+ * <p>
+ * Edge weights in a cavern are small positive integers (at most {@code Cavern.MAX_EDGE_WEIGHT},
+ * and exactly 1 in explore caverns), so the frontier only ever holds distances in a window
+ * [d, d + maxWeight] above the distance d being settled. The frontier is therefore kept as a
+ * circular array of maxWeight + 1 buckets, bucket i holding the vertices whose tentative
+ * distance is i modulo the number of buckets. Pushing, moving and popping a vertex are O(1),
+ * and a search runs in O(V + E + D), where D is the largest distance found.
+ * <p>
+ * Buckets are doubly-linked lists threaded through per-vertex int arrays that are allocated
+ * once, so a search does not allocate at all. An instance is not thread-safe.
+ */
+public class DialShortestPaths {
+    private static final int NONE = -1;
+
+    private final CompactGraph g;
+    /** The number of buckets: the largest edge weight, plus one. */
+    private final int bucketCount;
+    /** head[b] is the first vertex in bucket b, or NONE. */
+    private final int[] head;
+    /** next[v] and prev[v] link v to the other vertices in its bucket. */
+    private final int[] next;
+    private final int[] prev;
+    /** The distances found by the last search. */
+    private final int[] dist;
+
+    /**
+     * Constructor: an engine for searches over g.
+     * Precondition: every edge weight in {@code g} is non-negative.
+     */
+    public DialShortestPaths(CompactGraph g) {
+        this.g = g;
+        int maxWeight = 0;
+        for (int k = 0; k < g.edgeCount(); k++) {
+            maxWeight = Math.max(maxWeight, g.weight(k));
+        }
+        bucketCount = maxWeight + 1;
+        head = new int[bucketCount];
+        int n = g.vertexCount();
+        next = new int[n];
+        prev = new int[n];
+        dist = new int[n];
+    }
+
+    /**
+     * Return a new array holding the length of the shortest path from source to every
+     * vertex (Integer.MAX_VALUE for vertices that cannot be reached).
+     */
+    public int[] distancesFrom(int source) {
+        search(source);
+        return dist.clone();
+    }
+
+    /**
+     * Store the length of the shortest path from source to every vertex in out
+     * (Integer.MAX_VALUE for vertices that cannot be reached).
+     * Precondition: {@code out.length} is at least the number of vertices.
+     */
+    public void distancesFrom(int source, int[] out) {
+        search(source);
+        System.arraycopy(dist, 0, out, 0, dist.length);
+    }
+
+    /**
+     * Run Dial's algorithm from source, leaving the distances in dist.
+     */
+    private void search(int source) {
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        Arrays.fill(head, NONE);
+
+        dist[source] = 0;
+        push(source);
+        int queued = 1;
+        int d = 0;
+        while (queued > 0) {
+            int bucket = d % bucketCount;
+            int v = head[bucket];
+            if (v == NONE) {
+                d++;
+                continue;
+            }
+            unlink(v, bucket);
+            queued--;
+
+            for (int k = g.offset(v), end = g.offset(v + 1); k < end; k++) {
+                int w = g.target(k);
+                int dw = d + g.weight(k);
+                int old = dist[w];
+                if (dw < old) {
+                    if (old == Integer.MAX_VALUE) {
+                        queued++;
+                    } else {
+                        unlink(w, old % bucketCount);
+                    }
+                    dist[w] = dw;
+                    push(w);
+                }
+            }
+        }
+    }
+
+    /**
+     * Add v to the front of the bucket for dist[v].
+     */
+    private void push(int v) {
+        int bucket = dist[v] % bucketCount;
+        int first = head[bucket];
+        next[v] = first;
+        prev[v] = NONE;
+        if (first != NONE) {
+            prev[first] = v;
+        }
+        head[bucket] = v;
+    }
+
+    /**
+     * Remove v from the given bucket, which contains it.
+     */
+    private void unlink(int v, int bucket) {
+        if (prev[v] == NONE) {
+            head[bucket] = next[v];
+        } else {
+            next[prev[v]] = next[v];
+        }
+        if (next[v] != NONE) {
+            prev[next[v]] = prev[v];
+        }
+    }
+}
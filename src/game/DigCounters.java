@@ -0,0 +1,76 @@
+package game;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts of the caverns dug since the program started (or since {@code reset()}), and of how
+ * many were thrown away, so that the cost of rejection sampling can be measured.
+ * Both {@code Cavern} and {@code CavernGrid} count here, from any number of threads.
+ */
+public final class DigCounters {
+    private static final LongAdder exploreAttempts = new LongAdder();
+    private static final LongAdder exploreRejections = new LongAdder();
+    private static final LongAdder escapeAttempts = new LongAdder();
+    private static final LongAdder escapeRejections = new LongAdder();
+
+    private DigCounters() {
+    }
+
+    /**
+     * Count one explore cavern dug, which was thrown away iff rejected is true.
+     */
+    static void countExplore(boolean rejected) {
+        exploreAttempts.increment();
+        if (rejected) {
+            exploreRejections.increment();
+        }
+    }
+
+    /**
+     * Count one escape cavern dug, which was thrown away iff rejected is true.
+     */
+    static void countEscape(boolean rejected) {
+        escapeAttempts.increment();
+        if (rejected) {
+            escapeRejections.increment();
+        }
+    }
+
+    /**
+     * Return the number of explore caverns dug, including those thrown away.
+     */
+    public static long exploreAttempts() {
+        return exploreAttempts.sum();
+    }
+
+    /**
+     * Return the number of explore caverns thrown away.
+     */
+    public static long exploreRejections() {
+        return exploreRejections.sum();
+    }
+
+    /**
+     * Return the number of escape caverns dug, including those thrown away.
+     */
+    public static long escapeAttempts() {
+        return escapeAttempts.sum();
+    }
+
+    /**
+     * Return the number of escape caverns thrown away.
+     */
+    public static long escapeRejections() {
+        return escapeRejections.sum();
+    }
+
+    /**
+     * Set every count back to 0.
+     */
+    public static void reset() {
+        exploreAttempts.reset();
+        exploreRejections.reset();
+        escapeAttempts.reset();
+        escapeRejections.reset();
+    }
+}
@@ -0,0 +1,30 @@
+package game;
+
+import java.util.Locale;
+
+/**
+ * How caverns are dug from a seed.
+ * <p>
+ * Cavern generation has always used rejection sampling: a whole cavern is dug, and thrown
+ * away and dug again if it breaks a rule (for an explore cavern, if its orb is too close to
+ * the entrance). COMPATIBLE keeps doing so, and digs exactly the caverns every earlier version
+ * did from each seed, so that scores stay comparable. CONSTRUCTIVE places what the rules
+ * constrain after digging, so that far fewer caverns are thrown away; it digs different
+ * caverns from the same seeds.
+ */
+public enum DigMode {
+    COMPATIBLE,
+    CONSTRUCTIVE;
+
+    /** The system property naming the mode games are dug in, in any case; COMPATIBLE if unset. */
+    public static final String PROPERTY = "templeofdoom.digMode";
+
+    /**
+     * Return the mode named by the system property {@value #PROPERTY}, or COMPATIBLE if it is unset.
+     * Throw an IllegalArgumentException if it names no mode.
+     */
+    public static DigMode current() {
+        String mode = System.getProperty(PROPERTY);
+        return mode == null || mode.isEmpty() ? COMPATIBLE : valueOf(mode.toUpperCase(Locale.ROOT));
+    }
+}
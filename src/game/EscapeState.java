@@ -30,6 +30,58 @@ public interface EscapeState {
      */
     Collection<Node> getVertices();
 
+    /**
+     * Return the number of nodes returned by getVertices().
+     */
+    int vertexCount();
+
+    /**
+     * Return the index of n: a number in 0..vertexCount()-1 that no other node of the graph has,
+     * so that anything kept per node (distances, predecessors, visited flags) can be kept in an
+     * array of length vertexCount() rather than a map. It is also n's vertex in getCompactGraph().
+     * Precondition: n is one of the nodes returned by getVertices().
+     */
+    int indexOf(Node n);
+
+    /**
+     * Return the node with index i, so that getNodeByIndex(indexOf(n)) == n.
+     * Precondition: 0 &lt;= i &lt; vertexCount().
+     */
+    Node getNodeByIndex(int i);
+
+    /**
+     * Return the node of the graph whose getId() is id, or null if there is none.
+     */
+    Node getNodeById(long id);
+
+    /**
+     * Return the gold on the node with index i now, which is
+     * getNodeByIndex(i).getTile().getGold() but needs no Node.
+     * Precondition: 0 &lt;= i &lt; vertexCount().
+     */
+    int getGold(int i);
+
+    /**
+     * Return the length of the shortest path from n to the exit.
+     * The distances to the exit are computed once per cavern, so this takes constant time.
+     * Precondition: n is one of the nodes returned by getVertices().
+     */
+    int getDistanceToExit(Node n);
+
+    /**
+     * Return the length of the shortest path from the node with index i to the exit, which is
+     * getDistanceToExit(getNodeByIndex(i)) but needs no Node. This takes constant time.
+     * Precondition: 0 &lt;= i &lt; vertexCount().
+     */
+    int getDistanceToExit(int i);
+
+    /**
+     * Return an immutable compressed-sparse-row snapshot of the graph.
+     * Its vertices are the indices of the nodes returned by getVertices(), as given by indexOf(),
+     * so graph searches can run over flat arrays instead of Node and Edge objects.
+     */
+    CompactGraph getCompactGraph();
+
     /**
      * Change your current location n.
      * Throw an IllegalArgumentException if n is not a neihgbor of your current location.
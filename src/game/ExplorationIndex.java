@@ -0,0 +1,64 @@
+package game;
+
+/**
+ * The explore-phase view of a cavern, held in flat arrays, so that the engine calls an explorer
+ * makes at every step (moves, neighbour queries and distance queries) are array reads rather than
+ * walks over a node's HashSets and repeated lookups of the target's tile.
+ * <p>
+ * Open nodes are indexed by id, which is dense (0..n-1). For each one it keeps the node itself,
+ * the ids of its neighbours in {@code Cavern.Direction} order, and its Manhattan distance to the
+ * target, all computed once when the index is built.
+ */
+final class ExplorationIndex {
+    /** The id stored for a direction with no neighbour. */
+    static final int NONE = -1;
+
+    private final Node[] nodes;
+    /** neighbours[MAX_EXITS * v + d] is the id of v's neighbour in direction d, or NONE. */
+    private final int[] neighbours;
+    /** The Manhattan distance from each open node to the target, by id. */
+    private final int[] distanceToTarget;
+
+    /**
+     * Constructor: an index of the open nodes of cavern.
+     */
+    ExplorationIndex(Cavern cavern) {
+        int n = cavern.numOpenTiles();
+        nodes = new Node[n];
+        neighbours = new int[Node.MAX_EXITS * n];
+        distanceToTarget = new int[n];
+        Tile target = cavern.getTarget().getTile();
+        for (int v = 0; v < n; v++) {
+            Node node = cavern.getNodeById(v);
+            nodes[v] = node;
+            for (int d = 0; d < Node.MAX_EXITS; d++) {
+                Edge e = node.getExit(d);
+                neighbours[Node.MAX_EXITS * v + d] = e == null ? NONE : (int) e.getOther(node).getId();
+            }
+            Tile t = node.getTile();
+            distanceToTarget[v] = Math.abs(t.getRow() - target.getRow())
+                + Math.abs(t.getColumn() - target.getColumn());
+        }
+    }
+
+    /**
+     * Return the open node with id v.
+     */
+    Node node(int v) {
+        return nodes[v];
+    }
+
+    /**
+     * Return the id of the neighbour of open node v in the direction with ordinal d, or NONE.
+     */
+    int neighbour(int v, int d) {
+        return neighbours[Node.MAX_EXITS * v + d];
+    }
+
+    /**
+     * Return the Manhattan distance from open node v to the target.
+     */
+    int distanceToTarget(int v) {
+        return distanceToTarget[v];
+    }
+}
@@ -27,6 +27,19 @@ public interface ExplorationState {
      */
     Collection<NodeStatus> getNeighbours();
 
+    /**
+     * Store the unique identifiers of all direct neighbours of your current location
+     * in ids, and the grid distance of each of those neighbours to the target in the
+     * corresponding element of distances, and return how many neighbours there are.
+     * Only elements 0..count-1 of the buffers are written.
+     * <p>
+     * This gives the same information as getNeighbours() without allocating anything,
+     * so the buffers can be reused on every step.
+     * Throw an IllegalArgumentException if either buffer is shorter than
+     * {@code Node.MAX_EXITS}, the most neighbours a location can have.
+     */
+    int getNeighbours(long[] ids, int[] distances);
+
     /**
      * Return your current distance along the grid (NOT THE GRAPH) from the target.
      */
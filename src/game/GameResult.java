@@ -0,0 +1,31 @@
+package game;
+
+/**
+ * The outcome of one headless game: how well the explorer did and how long it took.
+ *
+ * @param seed              the seed the caverns were generated from
+ * @param stepsTaken        the number of steps taken to find the orb
+ * @param minTimeToExplore  the fewest steps in which the orb could have been found
+ * @param goldCollected     the gold collected during the escape
+ * @param score             the final score, including the exploration bonus
+ * @param exploreNanos      wall time spent in {@code Explorer.explore}
+ * @param escapeNanos       wall time spent in {@code Explorer.escape}
+ * @param exploreSucceeded  true iff the explorer finished exploring on the orb
+ * @param escapeSucceeded   true iff the explorer finished escaping at the exit
+ */
+public record GameResult(long seed,
+                         int stepsTaken,
+                         int minTimeToExplore,
+                         int goldCollected,
+                         int score,
+                         long exploreNanos,
+                         long escapeNanos,
+                         boolean exploreSucceeded,
+                         boolean escapeSucceeded) {
+    /**
+     * Return the number of steps taken to find the orb relative to the fewest possible.
+     */
+    public double stepsRatio() {
+        return stepsTaken / (double) minTimeToExplore;
+    }
+}
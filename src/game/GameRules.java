@@ -0,0 +1,43 @@
+package game;
+
+import static game.Constants.*;
+
+/**
+ * The timing and scoring rules shared by {@code GameState} and {@code HugeGameState}, so that
+ * a game scores the same whichever of them plays it.
+ */
+/* package */ final class GameRules {
+
+    private GameRules() {
+    }
+
+    /**
+     * Return the time allowed to escape a cavern of openTiles open tiles whose shortest
+     * path from the orb to the exit has length minTimeToEscape.
+     */
+    static int timeToEscape(long minTimeToEscape, int openTiles) {
+        return (int) Math.min(Integer.MAX_VALUE,
+            minTimeToEscape + EXTRA_TIME_FACTOR * (Cavern.MAX_EDGE_WEIGHT + 1) * openTiles / 2);
+    }
+
+    /**
+     * Return the bonus factor, as described in handout, for an explore phase that took
+     * stepsTaken steps where minTimeToExplore were needed.
+     */
+    static double bonusFactor(int stepsTaken, int minTimeToExplore) {
+        double exploreDiff = (stepsTaken - minTimeToExplore) / (double) minTimeToExplore;
+        if (exploreDiff <= 0) return MAX_BONUS;
+        double multDiff = MAX_BONUS - MIN_BONUS;
+        return Math.max(MIN_BONUS, MAX_BONUS - exploreDiff / NO_BONUS_LENGTH * multDiff);
+    }
+
+    /** The phase a game is in. */
+    enum Stage {
+        EXPLORE, ESCAPE
+    }
+
+    /** Thrown by a move that takes longer than the time remaining to escape. */
+    @SuppressWarnings("serial")
+    static class OutOfTimeException extends RuntimeException {
+    }
+}
@@ -1,29 +1,30 @@
 package game;
 
+import game.GameRules.OutOfTimeException;
+import game.GameRules.Stage;
 import gui.GUI;
 import student.Explorer;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.PrintStream;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static game.Constants.*;
 
 public class GameState implements ExplorationState, EscapeState {
 
-    private static final Random rand;
-
-    static {
-        rand = new Random();
-    }
-
     private final Cavern exploreCavern;
+    /** The explore cavern as flat arrays, for the calls made at every step of exploring. */
+    private final ExplorationIndex exploreIndex;
     private final Cavern escapeCavern;
     private final Explorer explorer;
     private final Optional<GUI> gui;
     private final long seed;
+    private final PrintStream out;
+    private final PrintStream err;
     private Node position;
     private int stepsTaken;
     private int timeRemaining;
@@ -34,11 +35,14 @@ public class GameState implements ExplorationState, EscapeState {
     private boolean exploreErrored = false;
     private boolean escapeErrored = false;
     private final int minTimeToExplore;
+    private long exploreNanos;
+    private long escapeNanos;
 
     public GameState(Path exploreCavernPath, Path escapeCavernPath) throws IOException {
-        exploreCavern = Cavern.deserialize(Files.readAllLines(exploreCavernPath));
+        exploreCavern = Cavern.load(exploreCavernPath);
+        exploreIndex = new ExplorationIndex(exploreCavern);
         minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        escapeCavern = Cavern.deserialize(Files.readAllLines(escapeCavernPath));
+        escapeCavern = Cavern.load(escapeCavernPath);
 
         explorer = new Explorer();
 
@@ -48,40 +52,49 @@ public class GameState implements ExplorationState, EscapeState {
         goldCollected = 0;
 
         seed = -1;
+        out = System.out;
+        err = System.err;
 
         stage = Stage.EXPLORE;
         gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(), position.getTile().getColumn(), 0));
     }
 
     /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
+     * Constructor: a random instance with a GUI only if useGUI is true,
+     * reporting its progress on out and err.
      */
-    private GameState(boolean useGui) {
-        this(rand.nextLong(), useGui);
+    private GameState(boolean useGui, PrintStream out, PrintStream err) {
+        // A random seed will not come round again, so there is no point caching its caverns.
+        this(ThreadLocalRandom.current().nextLong(), false, useGui, new Explorer(), out, err);
     }
 
     /**
-     * Constructor: a random instance with a GUI only if useGUI is true.
-     * The randomness is based on seed.
+     * Constructor: a random instance played by explorer, with a GUI only if useGUI is true,
+     * reporting its progress on out and err.
+     * The randomness is based on seed, and the caverns are dug in {@code DigMode.current()}.
+     * If useCache is true, the caverns come from the {@code CavernCache} when it is on.
      */
-    private GameState(long seed, boolean useGui) {
-        Random rand = new Random(seed);
-        int ROWS = rand.nextInt(MAX_ROWS - MIN_ROWS + 1) + MIN_ROWS;
-        int COLS = rand.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
-        exploreCavern = Cavern.digExploreCavern(ROWS, COLS, rand);
+    private GameState(long seed, boolean useCache, boolean useGui, Explorer explorer, PrintStream out, PrintStream err) {
+        DigMode mode = DigMode.current();
+        CavernCache.Caverns caverns = useCache
+            ? CavernCache.caverns(seed, mode, GameState::digCaverns)
+            : digCaverns(seed, mode);
+        exploreCavern = caverns.explore();
+        exploreIndex = new ExplorationIndex(exploreCavern);
         minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
-        Tile orbTile = exploreCavern.getTarget().getTile();
-        escapeCavern = Cavern.digEscapeCavern(ROWS, COLS, orbTile.getRow(), orbTile.getColumn(), rand);
+        escapeCavern = caverns.escape();
 
         position = exploreCavern.getEntrance();
         stepsTaken = 0;
         timeRemaining = Integer.MAX_VALUE;
         goldCollected = 0;
 
-        explorer = new Explorer();
+        this.explorer = explorer;
         stage = Stage.EXPLORE;
 
         this.seed = seed;
+        this.out = out;
+        this.err = err;
 
         if (useGui) {
             gui = Optional.of(new GUI(exploreCavern, position.getTile().getRow(),
@@ -91,18 +104,55 @@ public class GameState implements ExplorationState, EscapeState {
         }
     }
 
+    /**
+     * Return the explore and escape caverns generated from seed in the given mode.
+     */
+    private static CavernCache.Caverns digCaverns(long seed, DigMode mode) {
+        Random rand = new Random(seed);
+        int ROWS = rand.nextInt(MAX_ROWS - MIN_ROWS + 1) + MIN_ROWS;
+        int COLS = rand.nextInt(MAX_COLS - MIN_COLS + 1) + MIN_COLS;
+        Cavern exploreCavern = Cavern.digExploreCavern(ROWS, COLS, rand, mode);
+        Tile orbTile = exploreCavern.getTarget().getTile();
+        Cavern escapeCavern = Cavern.digEscapeCavern(ROWS, COLS, orbTile.getRow(), orbTile.getColumn(), rand, mode);
+        return new CavernCache.Caverns(exploreCavern, escapeCavern);
+    }
+
     public static int runNewGame(long seed, boolean useGui) {
+        return runNewGame(seed, useGui, System.out, System.err);
+    }
+
+    /**
+     * Run a new game as {@code runNewGame(seed, useGui)} does, but send all of its
+     * console output to out and err instead of System.out and System.err.
+     * Each call builds its own caverns and explorer, so headless games may be
+     * run concurrently on different threads.
+     */
+    public static int runNewGame(long seed, boolean useGui, PrintStream out, PrintStream err) {
         GameState state;
         if (seed != 0) {
-            state = new GameState(seed, useGui);
+            state = new GameState(seed, true, useGui, new Explorer(), out, err);
         } else {
-            state = new GameState(useGui);
+            state = new GameState(useGui, out, err);
         }
-        System.out.println("Seed : " + state.seed);
+        out.println("Seed : " + state.seed);
         state.run();
         return state.getScore();
     }
 
+    /**
+     * Play a game generated from seed with explorer and no GUI, sending its console
+     * output to out and err, and return the metrics of the game.
+     * Only the time spent inside explorer is counted in the phase timings.
+     */
+    public static GameResult runHeadless(long seed, Explorer explorer, PrintStream out, PrintStream err) {
+        GameState state = new GameState(seed, true, false, explorer, out, err);
+        out.println("Seed : " + state.seed);
+        state.run();
+        return new GameResult(state.seed, state.stepsTaken, state.minTimeToExplore,
+            state.goldCollected, state.getScore(), state.exploreNanos, state.escapeNanos,
+            state.exploreSucceeded, state.escapeSucceeded);
+    }
+
     /**
      * Run the game: first find the Orb and then escape.
      */
@@ -122,18 +172,21 @@ public class GameState implements ExplorationState, EscapeState {
         gui.ifPresent((g) -> g.updateCavern(exploreCavern, 0));
         gui.ifPresent((g) -> g.moveTo(position));
 
+        long start = System.nanoTime();
         try {
             explorer.explore(this);
+            exploreNanos = System.nanoTime() - start;
             if (position.equals(exploreCavern.getTarget())) {
                 exploreSucceeded = true;
             } else {
                 output(gui, "Your solution to explore returned at the wrong location.");
             }
         } catch (Throwable t) {
+            exploreNanos = System.nanoTime() - start;
             output(gui, "Your code caused an error  during the explore phase. Please see console output.");
-            System.err.println("We will move on to the escape phase anyway, but your solution is not correct!");
-            System.err.println("Here is the error that occurred.");
-            t.printStackTrace();
+            err.println("We will move on to the escape phase anyway, but your solution is not correct!");
+            err.println("Here is the error that occurred.");
+            t.printStackTrace(err);
             exploreErrored = true;
         }
     }
@@ -152,6 +205,7 @@ public class GameState implements ExplorationState, EscapeState {
         gui.ifPresent((g) -> g.setLighting(true));
         gui.ifPresent((g) -> g.updateCavern(escapeCavern, timeRemaining));
 
+        long start = System.nanoTime();
         try {
             explorer.escape(this);
             if (position.equals(escapeCavern.getTarget())) {
@@ -161,17 +215,18 @@ public class GameState implements ExplorationState, EscapeState {
             output(gui, "Your solution to escape ran out of steps before returning!");
         } catch (Throwable t) {
             output(gui, "Your code caused an error during the escape phase. Please see console output.");
-            t.printStackTrace();
+            t.printStackTrace(err);
             escapeErrored = true;
         }
+        escapeNanos = System.nanoTime() - start;
 
         if (!escapeSucceeded) {
             output(gui, "Your solution to escape failed to end at the stairs. Your code is not correct!");
         }
-        System.out.println("Gold collected   : " + getGoldCollected());
+        out.println("Gold collected   : " + getGoldCollected());
         DecimalFormat df = new DecimalFormat("#.##");
-        System.out.println("Bonus multiplier : " + df.format(computeBonusFactor()));
-        System.out.println("Score            : " + getScore());
+        out.println("Bonus multiplier : " + df.format(computeBonusFactor()));
+        out.println("Score            : " + getScore());
     }
 
     /**
@@ -179,18 +234,14 @@ public class GameState implements ExplorationState, EscapeState {
      */
     private int computeTimeToEscape() {
         int minTimeToEscape = escapeCavern.minPathLengthToTarget(position);
-        return (int) (minTimeToEscape + EXTRA_TIME_FACTOR * (Cavern.MAX_EDGE_WEIGHT + 1) * escapeCavern.numOpenTiles() / 2);
-
+        return GameRules.timeToEscape(minTimeToEscape, escapeCavern.numOpenTiles());
     }
 
     /**
      * Return the bonus factor, as described in handout.
      */
     private double computeBonusFactor() {
-        double exploreDiff = (stepsTaken - minTimeToExplore) / (double) minTimeToExplore;
-        if (exploreDiff <= 0) return MAX_BONUS;
-        double multDiff = MAX_BONUS - MIN_BONUS;
-        return Math.max(MIN_BONUS, MAX_BONUS - exploreDiff / NO_BONUS_LENGTH * multDiff);
+        return GameRules.bonusFactor(stepsTaken, minTimeToExplore);
     }
 
     /**
@@ -204,8 +255,11 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("moveTo(ID) can only be called while exploring!");
         }
 
-        for (Node n : position.getNeighbours()) {
-            if (n.getId() == id) {
+        int v = (int) position.getId();
+        for (int d = 0; d < Node.MAX_EXITS; d++) {
+            int w = exploreIndex.neighbour(v, d);
+            if (w != ExplorationIndex.NONE && w == id) {
+                Node n = exploreIndex.node(w);
                 position = n;
                 stepsTaken++;
                 gui.ifPresent((g) -> g.updateBonus(computeBonusFactor()));
@@ -238,17 +292,37 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("getNeighbours() can only be called while exploring!");
         }
 
-        Collection<NodeStatus> options = new ArrayList<>();
-        for (Node n : position.getNeighbours()) {
-            int distance = computeDistanceToTarget(n.getTile().getRow(), n.getTile().getColumn());
-            options.add(new NodeStatus(n.getId(), distance));
+        long[] ids = new long[Node.MAX_EXITS];
+        int[] distances = new int[Node.MAX_EXITS];
+        int count = getNeighbours(ids, distances);
+        Collection<NodeStatus> options = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            options.add(new NodeStatus(ids[i], distances[i]));
         }
         return options;
     }
 
-    private int computeDistanceToTarget(int row, int col) {
-        return Math.abs(row - exploreCavern.getTarget().getTile().getRow())
-            + Math.abs(col - exploreCavern.getTarget().getTile().getColumn());
+    @Override
+    public int getNeighbours(long[] ids, int[] distances) {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getNeighbours() can only be called while exploring!");
+        }
+        if (ids.length < Node.MAX_EXITS || distances.length < Node.MAX_EXITS) {
+            throw new IllegalArgumentException("getNeighbours: buffers must hold at least "
+                + Node.MAX_EXITS + " neighbours");
+        }
+
+        int v = (int) position.getId();
+        int count = 0;
+        for (int d = 0; d < Node.MAX_EXITS; d++) {
+            int w = exploreIndex.neighbour(v, d);
+            if (w != ExplorationIndex.NONE) {
+                ids[count] = w;
+                distances[count] = exploreIndex.distanceToTarget(w);
+                count++;
+            }
+        }
+        return count;
     }
 
     /**
@@ -260,7 +334,7 @@ public class GameState implements ExplorationState, EscapeState {
             throw new IllegalStateException("getDistanceToTarget() can only be called while exploring!");
         }
 
-        return computeDistanceToTarget(position.getTile().getRow(), position.getTile().getColumn());
+        return exploreIndex.distanceToTarget((int) position.getId());
     }
 
     @Override
@@ -290,6 +364,78 @@ public class GameState implements ExplorationState, EscapeState {
         return Collections.unmodifiableSet(escapeCavern.getGraph());
     }
 
+    @Override
+    public int vertexCount() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("vertexCount: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.numOpenTiles();
+    }
+
+    @Override
+    public int indexOf(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("indexOf: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return (int) n.getId(); // the open nodes of a cavern have ids 0..numOpenTiles()-1
+    }
+
+    @Override
+    public Node getNodeByIndex(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getNodeByIndex: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getNodeById(i);
+    }
+
+    @Override
+    public int getGold(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getGold: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getNodeById(i).getTile().getGold();
+    }
+
+    @Override
+    public Node getNodeById(long id) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getNodeById: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return id >= 0 && id < escapeCavern.numOpenTiles() ? escapeCavern.getNodeById((int) id) : null;
+    }
+
+    @Override
+    public int getDistanceToExit(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getDistanceToExit: Error, " +
+                "distances may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.minPathLengthToTarget(n);
+    }
+
+    @Override
+    public int getDistanceToExit(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getDistanceToExit: Error, " +
+                "distances may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.minPathLengthToTarget(i);
+    }
+
+    @Override
+    public CompactGraph getCompactGraph() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getCompactGraph: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getCompactGraph();
+    }
+
     /**
      * Attempts to move the explorer from the current position to
      * the <tt>Node</tt> <tt>n</tt>. Throws an <tt>IllegalArgumentException</tt>
@@ -303,19 +449,21 @@ public class GameState implements ExplorationState, EscapeState {
         if (stage != Stage.ESCAPE) {
             throw new IllegalStateException("moveTo(Node) can only be called when escaping!");
         }
-        int distance = position.getEdge(n).length;
+        // Node ids repeat from one cavern to the next and equals() compares ids
+        // only, so the neighbour must be this cavern's own node.
+        Edge edge = position.getEdge(n);
+        if (edge.getDest() != n) {
+            throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+        }
+        int distance = edge.length;
         if (timeRemaining - distance < 0) {
             throw new OutOfTimeException();
         }
 
-        if (position.getNeighbours().contains(n)) {
-            position = n;
-            timeRemaining -= distance;
-            gui.ifPresent((g) -> g.updateTimeRemaining(timeRemaining));
-            gui.ifPresent((g) -> g.moveTo(n));
-        } else {
-            throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
-        }
+        position = n;
+        timeRemaining -= distance;
+        gui.ifPresent((g) -> g.updateTimeRemaining(timeRemaining));
+        gui.ifPresent((g) -> g.moveTo(n));
     }
 
     @Override
@@ -367,15 +515,7 @@ public class GameState implements ExplorationState, EscapeState {
     }
 
     private void output(Optional<GUI> gui, String s) {
-        System.err.println(s);
+        err.println(s);
         gui.ifPresent((g) -> g.displayError(s));
     }
-
-    private enum Stage {
-        EXPLORE, ESCAPE
-    }
-
-    @SuppressWarnings("serial")
-    private static class OutOfTimeException extends RuntimeException {
-    }
 }
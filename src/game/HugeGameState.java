@@ -0,0 +1,401 @@
+package game;
+
+import game.GameRules.OutOfTimeException;
+import game.GameRules.Stage;
+import student.Explorer;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static game.Constants.*;
+
+/**
+ * A game played headless on caverns of a given size, stored as {@code CavernGrid}s, so that
+ * explorers can be stress-tested on caverns of 10^7 to 10^8 cells, far beyond what
+ * {@code GameState} and {@code Cavern} can hold.
+ * <p>
+ * The game follows the same rules, and reports the same output, as {@code GameState}.
+ * Node ids are the numbers of the open tiles of each {@code CavernGrid}. During the explore
+ * phase no nodes are created at all. During the escape phase every node handed to the explorer
+ * is a fresh view of its tile, which the game does not keep, so nodes must be compared with
+ * equals() rather than ==. An explorer that works on indices, with {@code getCompactGraph()},
+ * {@code getGold(int)} and {@code getDistanceToExit(int)}, needs no node per vertex at all:
+ * only the nodes it moves to. The {@code CompactGraph} of the escape cavern, which takes about
+ * 40 bytes per open tile, is built only if the explorer asks for it.
+ */
+public class HugeGameState implements ExplorationState, EscapeState {
+
+    private final CavernGrid exploreCavern;
+    private final CavernGrid escapeCavern;
+    private final Explorer explorer;
+    private final PrintStream out;
+    private final PrintStream err;
+    /** The cell of the orb, which is the same in both grids. */
+    private final int orbCell;
+    /** The cell of the current position, in whichever grid is being played. */
+    private int position;
+    private int stepsTaken;
+    private int timeRemaining;
+    /** Gold is a long: caverns this big can hold more than Integer.MAX_VALUE of it. */
+    private long goldCollected;
+    private Stage stage;
+    private boolean exploreSucceeded = false;
+    private boolean escapeSucceeded = false;
+    private final int minTimeToExplore;
+    private long exploreNanos;
+    private long escapeNanos;
+
+    /**
+     * Constructor: an instance of size (rows, cols) played by explorer, reporting its progress
+     * on out and err. The randomness is based on seed, and the caverns are dug in {@code DigMode.current()}.
+     */
+    private HugeGameState(long seed, int rows, int cols, Explorer explorer, PrintStream out, PrintStream err) {
+        Random rand = new Random(seed);
+        DigMode mode = DigMode.current();
+        exploreCavern = CavernGrid.digExploreCavern(rows, cols, rand, mode);
+        minTimeToExplore = exploreCavern.minPathLengthToTarget(exploreCavern.getEntrance());
+        orbCell = exploreCavern.cellOf(exploreCavern.getTarget());
+        escapeCavern = CavernGrid.digEscapeCavern(rows, cols, exploreCavern.rowOf(orbCell),
+            exploreCavern.columnOf(orbCell), rand, mode);
+
+        position = exploreCavern.cellOf(exploreCavern.getEntrance());
+        stepsTaken = 0;
+        timeRemaining = Integer.MAX_VALUE;
+        goldCollected = 0;
+
+        this.explorer = explorer;
+        stage = Stage.EXPLORE;
+
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Play a new headless game on caverns of size (rows, cols), generated from seed
+     * (or from a random seed if seed is 0), sending its console output to out and err,
+     * and return the score.
+     */
+    public static long runNewGame(long seed, int rows, int cols, PrintStream out, PrintStream err) {
+        return runNewGame(seed, rows, cols, new Explorer(), out, err);
+    }
+
+    /**
+     * Play a new headless game as {@code runNewGame(seed, rows, cols, out, err)} does,
+     * but with the given explorer.
+     * Throw an IllegalArgumentException if the caverns would be smaller than MIN_ROWS x MIN_COLS.
+     */
+    public static long runNewGame(long seed, int rows, int cols, Explorer explorer, PrintStream out, PrintStream err) {
+        if (rows < MIN_ROWS || cols < MIN_COLS) {
+            // Smaller caverns have no room for the orb far enough from the entrance.
+            throw new IllegalArgumentException("runNewGame: caverns must be at least " + MIN_ROWS + "x" + MIN_COLS);
+        }
+        if (seed == 0) {
+            seed = ThreadLocalRandom.current().nextLong();
+        }
+        out.println("Seed : " + seed);
+        out.println("Size : " + rows + "x" + cols);
+        HugeGameState state = new HugeGameState(seed, rows, cols, explorer, out, err);
+        state.run();
+        return state.getScore();
+    }
+
+    /**
+     * Run the game: first find the Orb and then escape.
+     */
+    private void run() {
+        explore();
+        if (!exploreSucceeded) return;
+        escape();
+    }
+
+    private void explore() {
+        stage = Stage.EXPLORE;
+        long start = System.nanoTime();
+        try {
+            explorer.explore(this);
+            exploreNanos = System.nanoTime() - start;
+            if (position == orbCell) {
+                exploreSucceeded = true;
+            } else {
+                err.println("Your solution to explore returned at the wrong location.");
+            }
+        } catch (Throwable t) {
+            exploreNanos = System.nanoTime() - start;
+            err.println("Your code caused an error during the explore phase. Please see console output.");
+            t.printStackTrace(err);
+        }
+        out.println("Steps taken      : " + stepsTaken + " (minimum " + minTimeToExplore + ")");
+        out.printf("Explore time     : %.3f s%n", exploreNanos / 1e9);
+    }
+
+    private void escape() {
+        stage = Stage.ESCAPE;
+        position = orbCell;
+        timeRemaining = computeTimeToEscape();
+
+        long start = System.nanoTime();
+        try {
+            explorer.escape(this);
+            if (position == escapeCavern.cellOf(escapeCavern.getTarget())) {
+                escapeSucceeded = true;
+            }
+        } catch (OutOfTimeException e) {
+            err.println("Your solution to escape ran out of steps before returning!");
+        } catch (Throwable t) {
+            err.println("Your code caused an error during the escape phase. Please see console output.");
+            t.printStackTrace(err);
+        }
+        escapeNanos = System.nanoTime() - start;
+
+        if (!escapeSucceeded) {
+            err.println("Your solution to escape failed to end at the stairs. Your code is not correct!");
+        }
+        out.printf("Escape time      : %.3f s%n", escapeNanos / 1e9);
+        out.println("Gold collected   : " + goldCollected);
+        DecimalFormat df = new DecimalFormat("#.##");
+        out.println("Bonus multiplier : " + df.format(computeBonusFactor()));
+        out.println("Score            : " + getScore());
+    }
+
+    /**
+     * Return the time to escape.
+     */
+    private int computeTimeToEscape() {
+        long minTimeToEscape = escapeCavern.minPathLengthToTarget(escapeCavern.vertexOf(position));
+        return GameRules.timeToEscape(minTimeToEscape, escapeCavern.numOpenTiles());
+    }
+
+    /**
+     * Return the bonus factor, as described in handout.
+     */
+    private double computeBonusFactor() {
+        return GameRules.bonusFactor(stepsTaken, minTimeToExplore);
+    }
+
+    private long getScore() {
+        return (long) (computeBonusFactor() * goldCollected);
+    }
+
+    @Override
+    public void moveTo(long id) {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("moveTo(ID) can only be called while exploring!");
+        }
+
+        for (int d = 0; d < Node.MAX_EXITS; d++) {
+            int q = exploreCavern.neighbourCell(position, d);
+            if (q >= 0 && exploreCavern.vertexOf(q) == id) {
+                position = q;
+                stepsTaken++;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+    }
+
+    @Override
+    public long getCurrentLocation() {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getLocation() can only be called while exploring!");
+        }
+
+        return exploreCavern.vertexOf(position);
+    }
+
+    @Override
+    public Collection<NodeStatus> getNeighbours() {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getNeighbours() can only be called while exploring!");
+        }
+
+        long[] ids = new long[Node.MAX_EXITS];
+        int[] distances = new int[Node.MAX_EXITS];
+        int count = getNeighbours(ids, distances);
+        Collection<NodeStatus> options = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            options.add(new NodeStatus(ids[i], distances[i]));
+        }
+        return options;
+    }
+
+    @Override
+    public int getNeighbours(long[] ids, int[] distances) {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getNeighbours() can only be called while exploring!");
+        }
+        if (ids.length < Node.MAX_EXITS || distances.length < Node.MAX_EXITS) {
+            throw new IllegalArgumentException("getNeighbours: buffers must hold at least "
+                + Node.MAX_EXITS + " neighbours");
+        }
+
+        int count = 0;
+        for (int d = 0; d < Node.MAX_EXITS; d++) {
+            int q = exploreCavern.neighbourCell(position, d);
+            if (q >= 0) {
+                ids[count] = exploreCavern.vertexOf(q);
+                distances[count] = computeDistanceToTarget(q);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int computeDistanceToTarget(int cell) {
+        return Math.abs(exploreCavern.rowOf(cell) - exploreCavern.rowOf(orbCell))
+            + Math.abs(exploreCavern.columnOf(cell) - exploreCavern.columnOf(orbCell));
+    }
+
+    @Override
+    public int getDistanceToTarget() {
+        if (stage != Stage.EXPLORE) {
+            throw new IllegalStateException("getDistanceToTarget() can only be called while exploring!");
+        }
+
+        return computeDistanceToTarget(position);
+    }
+
+    @Override
+    public Node getCurrentNode() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getCurrentNode: Error, " +
+                "current Node may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getNodeAtCell(position);
+    }
+
+    @Override
+    public Node getExit() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getEntrance: Error, " +
+                "current Node may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getNode(escapeCavern.getTarget());
+    }
+
+    @Override
+    public Collection<Node> getVertices() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getVertices: Error, " +
+                "Vertices may not be accessed unless in ESCAPE");
+        }
+        return Collections.unmodifiableCollection(escapeCavern.getGraph());
+    }
+
+    @Override
+    public int vertexCount() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("vertexCount: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.numOpenTiles();
+    }
+
+    @Override
+    public int indexOf(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("indexOf: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return (int) n.getId(); // the node for open tile v has id v
+    }
+
+    @Override
+    public Node getNodeByIndex(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getNodeByIndex: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getNode(i);
+    }
+
+    @Override
+    public int getGold(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getGold: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.goldAt(i);
+    }
+
+    @Override
+    public Node getNodeById(long id) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getNodeById: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return id >= 0 && id < escapeCavern.numOpenTiles() ? escapeCavern.getNode((int) id) : null;
+    }
+
+    @Override
+    public int getDistanceToExit(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getDistanceToExit: Error, " +
+                "distances may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.minPathLengthToTarget((int) n.getId());
+    }
+
+    @Override
+    public int getDistanceToExit(int i) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getDistanceToExit: Error, " +
+                "distances may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.minPathLengthToTarget(i);
+    }
+
+    @Override
+    public CompactGraph getCompactGraph() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getCompactGraph: Error, " +
+                "the graph may not be accessed unless in ESCAPE");
+        }
+        return escapeCavern.getCompactGraph();
+    }
+
+    @Override
+    public void moveTo(Node n) {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("moveTo(Node) can only be called when escaping!");
+        }
+        Tile t = n.getTile();
+        int cell = t.getRow() * escapeCavern.getColumnCount() + t.getColumn();
+        for (int d = 0; d < Node.MAX_EXITS; d++) {
+            if (escapeCavern.neighbourCell(position, d) == cell) {
+                int distance = escapeCavern.weight(position, d);
+                if (timeRemaining - distance < 0) {
+                    throw new OutOfTimeException();
+                }
+                position = cell;
+                timeRemaining -= distance;
+                return;
+            }
+        }
+        throw new IllegalArgumentException("moveTo: Node must be adjacent to position");
+    }
+
+    @Override
+    public void pickUpGold() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("pickUpGold() can only be called while escaping!");
+        }
+        int gold = escapeCavern.takeGold(escapeCavern.vertexOf(position));
+        if (gold <= 0) {
+            throw new IllegalStateException("pickUpGold: Error, no gold on this tile");
+        }
+        goldCollected += gold;
+    }
+
+    @Override
+    public int getTimeRemaining() {
+        if (stage != Stage.ESCAPE) {
+            throw new IllegalStateException("getTimeRemaining() can only be called while escaping!");
+        }
+        return timeRemaining;
+    }
+}
@@ -0,0 +1,240 @@
+package game;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * An instance is a priority queue of int keys in 0..capacity-1 implemented as an
+ * indexed min-heap. Positions and priorities live in arrays indexed by key (such as a
+ * node id), so no operation hashes, boxes or allocates.
+ * A heap can be reused for another search by calling {@code clear()}.
+ */
+public class IntMinHeap {
+
+    private int size; // number of elements in the priority queue (and heap)
+
+    /**
+     * The heap invariant is given below. Note that / denotes int division.
+     * <p>
+     * b[0..size-1] is viewed as a min-heap, i.e.
+     * 1. Each array element in b[0..size-1] contains a key in the heap.
+     * 2. The children of each b[i] are b[2i+1] and b[2i+2].
+     * 3. The parent of each b[i] (except b[0]) is b[(i-1)/2].
+     * 4. The priority of the parent of each b[i] is <= the priority of b[i].
+     * 5. For each key k in the heap, index[k] is its position in b and
+     * priority[k] its priority. For each key not in the heap, index[k] is -1.
+     */
+    private final int[] b;
+    private final int[] index;
+    private final double[] priority;
+
+    /**
+     * Constructor: an empty heap for keys 0..capacity-1.
+     */
+    public IntMinHeap(int capacity) {
+        b = new int[capacity];
+        index = new int[capacity];
+        priority = new double[capacity];
+        Arrays.fill(index, -1);
+    }
+
+    /**
+     * Return the number of elements in the priority queue.
+     * This operation takes constant time.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Return the largest key this heap can hold, plus one.
+     */
+    public int capacity() {
+        return b.length;
+    }
+
+    /**
+     * Return true iff key is in the priority queue. This operation takes constant time.
+     */
+    public boolean contains(int key) {
+        return index[key] >= 0;
+    }
+
+    /**
+     * Return the priority of key.
+     * Throw an IllegalArgumentException if key is not in the queue.
+     */
+    public double getPriority(int key) {
+        if (index[key] < 0) {
+            throw new IllegalArgumentException("No element found: " + key);
+        }
+        return priority[key];
+    }
+
+    /**
+     * Add key with priority p to the priority queue.
+     * Throw an IllegalArgumentException if key is already in the queue.
+     * The worst-case time is O(log N).
+     */
+    public void add(int key, double p) {
+        if (index[key] >= 0) {
+            throw new IllegalArgumentException("Cannot insert the same element twice");
+        }
+
+        priority[key] = p;
+        b[size] = key;
+        index[key] = size;
+        size++;
+        bubbleUp(size - 1);
+    }
+
+    /**
+     * Return the key of the priority queue with lowest priority, without
+     * changing the queue. This operation takes constant time.
+     * Throw a NoSuchElementException if the priority queue is empty.
+     */
+    public int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return b[0];
+    }
+
+    /**
+     * Remove and return the key of the priority queue with lowest priority.
+     * The worst-case time is O(log N).
+     * Throw a NoSuchElementException if the priority queue is empty.
+     */
+    public int poll() {
+        int val = peek();
+        index[val] = -1;
+        size--;
+        if (size > 0) {
+            b[0] = b[size];
+            index[b[0]] = 0;
+            bubbleDown(0);
+        }
+        return val;
+    }
+
+    /**
+     * Change the priority of key to p.
+     * The worst-case time is O(log N).
+     * Throw an IllegalArgumentException if key is not in the priority queue.
+     */
+    public void changePriority(int key, double p) {
+        int i = index[key];
+        if (i < 0) {
+            throw new IllegalArgumentException("No element found: " + key);
+        }
+
+        double old = priority[key];
+        priority[key] = p;
+        if (p < old) {
+            bubbleUp(i);
+        } else {
+            bubbleDown(i);
+        }
+    }
+
+    /**
+     * Add key with priority p if it is not in the queue, and otherwise lower its
+     * priority to p if p is smaller. Return true iff the queue changed.
+     * The worst-case time is O(log N).
+     */
+    public boolean addOrDecrease(int key, double p) {
+        int i = index[key];
+        if (i < 0) {
+            add(key, p);
+            return true;
+        }
+        if (p < priority[key]) {
+            priority[key] = p;
+            bubbleUp(i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Remove every key from the priority queue. This takes time proportional to
+     * the number of keys in the queue, not to its capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            index[b[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Bubble b[k] up in heap to its right place.
+     * Precondition: Every b[i] satisfies the heap property except perhaps
+     * k's priority < parent's priority
+     */
+    private void bubbleUp(int k) {
+        int val = b[k];
+        double p = priority[val];
+
+        int i = k;
+        while (i > 0) {
+            int parentIdx = (i - 1) / 2;
+            int parentVal = b[parentIdx];
+
+            if (priority[parentVal] <= p) {
+                break;
+            }
+
+            b[i] = parentVal;
+            index[parentVal] = i;
+
+            i = parentIdx;
+        }
+        b[i] = val;
+        index[val] = i;
+    }
+
+    /**
+     * Bubble b[k] down in heap until it finds the right place.
+     * Precondition: Every b[i] satisfies the heap property except perhaps
+     * k's priority > a child's priority.
+     */
+    private void bubbleDown(int k) {
+        int val = b[k];
+        double p = priority[val];
+
+        int i = k;
+        while (2 * i + 1 < size) {
+            int childIdx = getSmallerChild(i);
+            int childVal = b[childIdx];
+
+            if (p <= priority[childVal]) {
+                break;
+            }
+
+            b[i] = childVal;
+            index[childVal] = i;
+
+            i = childIdx;
+        }
+        b[i] = val;
+        index[val] = i;
+    }
+
+    /**
+     * Return the index of the smaller child of b[q]
+     * Precondition: left child exists: 2q+1 < size of heap
+     */
+    private int getSmallerChild(int q) {
+        int leftIdx = 2 * q + 1;
+        int rightIdx = 2 * q + 2;
+        if (size <= rightIdx) {
+            return leftIdx;
+        }
+        return (priority[b[leftIdx]] <= priority[b[rightIdx]] ? leftIdx : rightIdx);
+    }
+}
@@ -0,0 +1,80 @@
+package game;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A first-in, first-out queue of ints, kept in a circular array that doubles when full,
+ * so that queueing an int neither boxes it nor allocates a node.
+ */
+final class IntQueue {
+    private int[] elements;
+    /** The index of the head of the queue in elements. */
+    private int head;
+    private int size;
+
+    /**
+     * Constructor: an empty queue with room for at least capacity ints before it grows.
+     */
+    IntQueue(int capacity) {
+        elements = new int[Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1];
+    }
+
+    /**
+     * Return the number of ints in this queue.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return true iff this queue is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add v to the tail of this queue.
+     */
+    void add(int v) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = v;
+        size++;
+    }
+
+    /**
+     * Remove and return the int at the head of this queue.
+     * Throw a NoSuchElementException if this queue is empty.
+     */
+    int poll() {
+        if (size == 0) {
+            throw new NoSuchElementException("poll: queue is empty");
+        }
+        int v = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return v;
+    }
+
+    /**
+     * Remove every int from this queue, keeping its capacity.
+     */
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Double the capacity of this queue, unwrapping its contents to the start of the new array.
+     */
+    private void grow() {
+        int[] larger = new int[elements.length * 2];
+        int firstPart = elements.length - head;
+        System.arraycopy(elements, head, larger, 0, firstPart);
+        System.arraycopy(elements, 0, larger, firstPart, head);
+        elements = larger;
+        head = 0;
+    }
+}
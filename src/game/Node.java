@@ -10,12 +10,14 @@ import java.util.Set;
  */
 public class Node {
     /**
-     * The least positive fresh identifier available
+     * The most edges a node can have: one per {@code Cavern.Direction}.
      */
-    private static long FRESH_ID = 0;
+    public static final int MAX_EXITS = 4;
 
     /**
-     * The unique numerical identifier of this Node
+     * The unique numerical identifier of this Node.
+     * Ids are dense within a cavern: the open nodes of a cavern with n open
+     * tiles have ids 0..n-1, and its walls follow on from there.
      */
     private final long id;
     /**
@@ -23,6 +25,11 @@ public class Node {
      */
     private final Set<Edge> edges;
     private final Set<Node> neighbours;
+    /**
+     * The same edges as in edges, indexed by the ordinal of the
+     * {@code Cavern.Direction} they leave in (null where there is no edge).
+     */
+    private final Edge[] exits;
 
     private final Set<Edge> unmodifiableEdges;
     private final Set<Node> unmodifiableNeighbours;
@@ -32,18 +39,14 @@ public class Node {
      */
     private final Tile tile;
 
-    /* package */ Node(Tile t) {
-        this(FRESH_ID, t);
-    }
-
     /**
      * Constructor: an instance with id givenId and tile t
      */
     /* package */ Node(long givenId, Tile t) {
         id = givenId;
-        FRESH_ID = Math.max(FRESH_ID, givenId + 1);
         edges = new HashSet<>();
         neighbours = new HashSet<>();
+        exits = new Edge[MAX_EXITS];
 
         unmodifiableEdges = Collections.unmodifiableSet(edges);
         unmodifiableNeighbours = Collections.unmodifiableSet(neighbours);
@@ -53,14 +56,19 @@ public class Node {
 
     /**
      * Add edge e to the graph.
+     * Precondition: e joins this node to a node on an adjacent tile.
      */
     /* package */ void addEdge(Edge e) {
+        Node other = e.getOther(this);
         edges.add(e);
-        neighbours.add(e.getOther(this));
+        neighbours.add(other);
+        exits[Cavern.Direction.between(tile, other.tile).ordinal()] = e;
     }
 
     /**
      * Return the unique Identifier of this Node.
+     * The open nodes of a cavern are numbered 0..n-1, where n is the number
+     * of open tiles, so ids may be used directly as array indices.
      */
     public long getId() {
         return id;
@@ -68,17 +76,44 @@ public class Node {
 
     /**
      * Returns the Edge of this Node that connects to q.
-     * .     * Throw an IllegalArgumentException if there is no such edge.
+     * This operation takes constant time.
+     * Throw an IllegalArgumentException if there is no such edge.
      */
     public Edge getEdge(Node q) {
-        for (Edge e : edges) {
-            if (e.getDest().equals(q)) {
+        int dRow = q.tile.getRow() - tile.getRow();
+        int dCol = q.tile.getColumn() - tile.getColumn();
+        if (Math.abs(dRow) + Math.abs(dCol) == 1) {
+            Edge e = exits[Cavern.Direction.between(tile, q.tile).ordinal()];
+            if (e != null && e.getDest().equals(q)) {
                 return e;
             }
         }
         throw new IllegalArgumentException("getEdge: Node must be a neighbour of this Node");
     }
 
+    /**
+     * Return the Edge leaving this Node in direction d, or null if there is none.
+     */
+    public Edge getExit(Cavern.Direction d) {
+        return exits[d.ordinal()];
+    }
+
+    /**
+     * Return the Edge leaving this Node in the direction with ordinal slot,
+     * or null if there is none. Precondition: 0 &lt;= slot &lt; MAX_EXITS.
+     * <p>
+     * This allows the edges of a node to be visited without allocating an iterator:
+     * <pre>
+     *     for (int d = 0; d &lt; Node.MAX_EXITS; d++) {
+     *         Edge e = n.getExit(d);
+     *         if (e != null) { ... }
+     *     }
+     * </pre>
+     */
+    public Edge getExit(int slot) {
+        return exits[slot];
+    }
+
     /**
      * Return an unmodifiable set of Edges leaving this Node.
      */
@@ -1,12 +1,22 @@
 package main;
 
+import game.CavernCache;
+import game.Constants;
 import game.GameState;
+import game.HugeGameState;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Runs the program via the text (console) interface.
@@ -23,17 +33,126 @@ public class TXTmain {
                 System.err.println("Couldn't parse argument for -n option");
             }
         }
+        int threadsIndex = argList.indexOf("-j");
+        int numThreads = 0;
+        if (threadsIndex >= 0) {
+            try {
+                numThreads = Math.max(Integer.parseInt(argList.get(threadsIndex + 1)), 1);
+            } catch (Exception e) {
+                System.err.println("Couldn't parse argument for -j option");
+            }
+        }
+        int sizeIndex = argList.indexOf("-size");
+        int[] size = null;
+        if (sizeIndex >= 0) {
+            try {
+                String[] parts = argList.get(sizeIndex + 1).split("x");
+                size = new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+                if (size[0] < Constants.MIN_ROWS || size[1] < Constants.MIN_COLS) {
+                    throw new IllegalArgumentException("cavern too small");
+                }
+            } catch (Exception e) {
+                System.err.println("Couldn't parse argument for -size option, expected <rows>x<cols> of at least "
+                    + Constants.MIN_ROWS + "x" + Constants.MIN_COLS);
+                return;
+            }
+        }
+        int cacheIndex = argList.indexOf("-cache");
+        if (cacheIndex >= 0) {
+            try {
+                CavernCache.enable(Path.of(argList.get(cacheIndex + 1)), CavernCache.DEFAULT_MAX_BYTES);
+            } catch (Exception e) {
+                System.err.println("Couldn't use argument for -cache option as a directory");
+            }
+        }
         Optional<Long> seed = Utilities.parseSeedArgs(args);
 
-        int totalScore = 0;
+        // The seed of each game to play, 0 meaning a random seed.
+        long[] seeds = new long[numTimesToRun];
+        Arrays.fill(seeds, seed.isPresent() ? seed.get() : 0);
+        int seedsIndex = argList.indexOf("-seeds");
+        if (seedsIndex >= 0) {
+            try {
+                seeds = Utilities.readSeedFile(Path.of(argList.get(seedsIndex + 1)));
+            } catch (Exception e) {
+                System.err.println("Couldn't read argument for -seeds option as a file of seeds");
+            }
+        }
 
-        for (int i = 0; i < numTimesToRun; i++) {
-            totalScore += GameState.runNewGame((seed.isPresent() ? seed.get() : 0), false);
-            System.out.println();
+        long totalScore;
+        if (numThreads > 0) {
+            totalScore = runParallel(seeds, size, numThreads);
+        } else {
+            totalScore = 0;
+            for (long s : seeds) {
+                totalScore += runGame(s, size, System.out, System.err);
+                System.out.println();
+            }
         }
 
-        if (totalScore != 0) System.out.println("Average score : " + totalScore / numTimesToRun);
+        if (totalScore != 0) System.out.println("Average score : " + totalScore / seeds.length);
     }
 
+    /**
+     * Run a headless game with the given seed (0 for a random seed), sending its output to
+     * out and err, and return its score. If size is not null, the game is played in huge-cavern
+     * mode on caverns of size[0] rows and size[1] columns.
+     */
+    private static long runGame(long seed, int[] size, PrintStream out, PrintStream err) {
+        if (size == null) {
+            return GameState.runNewGame(seed, false, out, err);
+        }
+        return HugeGameState.runNewGame(seed, size[0], size[1], out, err);
+    }
+
+    /**
+     * Run a headless game for each of seeds (0 for a random seed) with the given size (as for
+     * runGame) on a pool of numThreads threads, and return their total score.
+     * The output of each game is buffered and printed in submission order once that
+     * game and all games before it have finished, so it reads exactly like a serial run.
+     */
+    private static long runParallel(long[] seeds, int[] size, int numThreads) {
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<BufferedGame>> games = new ArrayList<>(seeds.length);
+            for (long seed : seeds) {
+                games.add(pool.submit(() -> BufferedGame.run(seed, size)));
+            }
+
+            long totalScore = 0;
+            for (Future<BufferedGame> game : games) {
+                BufferedGame result = game.get();
+                System.out.print(result.out);
+                System.err.print(result.err);
+                System.out.println();
+                totalScore += result.score;
+            }
+            return totalScore;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for games to finish", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A game failed to run", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
 
+    /**
+     * The score and captured console output of one headless game.
+     */
+    private record BufferedGame(long score, String out, String err) {
+        /**
+         * Run a headless game with the given seed and size, capturing everything it prints.
+         */
+        static BufferedGame run(long seed, int[] size) {
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+            long score;
+            try (PrintStream out = new PrintStream(outBytes); PrintStream err = new PrintStream(errBytes)) {
+                score = runGame(seed, size, out, err);
+            }
+            return new BufferedGame(score, outBytes.toString(), errBytes.toString());
+        }
+    }
 }
@@ -1,12 +1,15 @@
 package main;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
- * Utility routine(s) used by the main "driver" programs
+ * Utility routine(s) used by the main "driver" programs and the benchmarks
  */
 public class Utilities {
     static Optional<Long> parseSeedArgs(String... args) {
@@ -24,4 +27,16 @@ public class Utilities {
         }
         return seed;
     }
+
+    /**
+     * Return the seeds in file, one per line, ignoring blank lines and lines starting with #
+     * (the format of res/seeds.txt). Throw a NumberFormatException if a line is not a seed.
+     */
+    public static long[] readSeedFile(Path file) throws IOException {
+        return Files.readAllLines(file).stream()
+            .map(String::trim)
+            .filter((line) -> !line.isEmpty() && !line.startsWith("#"))
+            .mapToLong(Long::parseLong)
+            .toArray();
+    }
 }
@@ -0,0 +1,374 @@
+package student;
+
+import game.CompactGraph;
+import game.DialShortestPaths;
+import game.EscapeState;
+import game.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plans which gold to collect on the way out by treating the escape as an orienteering problem:
+ * choose an order of gold tiles to visit that maximises the gold collected, subject to reaching
+ * the exit within the time remaining.
+ * <p>
+ * The gold tiles nearest the start (at most MAX_CANDIDATES of them) become candidates, and the
+ * shortest distances between all of them are computed up front, one search of the graph per
+ * candidate. On a large graph those searches may not all fit in the time limit, so they stop at
+ * half of it and the farthest candidates are dropped. A depth-first branch-and-bound
+ * search then extends routes one candidate at a time, trying the candidates with the best gold
+ * per step first. A branch is pruned when even collecting every candidate still reachable from it
+ * (each one on its own, with time to get to the exit afterwards) could not beat the best route
+ * found so far. The search starts from a greedy nearest-gold route, so it never does worse than
+ * that, and it stops when it has proved its route optimal or has used up its expansion or
+ * wall-clock budget, whichever comes first.
+ * <p>
+ * Every route the planner returns can be followed along shortest paths and still reach the exit
+ * in time, so following the route and then the shortest path to the exit always escapes.
+ */
+public class EscapePlanner {
+  /**
+   * The default wall-clock cap on one call to plan(), in nanoseconds. Only the work every plan
+   * needs, one search of the graph from the start and a scan of it for gold, can run past it.
+   */
+  public static final long DEFAULT_TIME_LIMIT_NANOS = 500_000_000L;
+  /** The most gold tiles considered by one plan. */
+  static final int MAX_CANDIDATES = 256;
+  /**
+   * The most routes extended by one plan. Unlike the wall-clock cap this does not depend on the
+   * machine, so plans that stop on it are reproducible.
+   */
+  private static final long MAX_EXPANSIONS = 50_000;
+  /** How many expansions pass between checks of the clock. */
+  private static final int CLOCK_CHECK_INTERVAL = 1024;
+
+  private final long timeLimitNanos;
+  private final boolean parallel;
+
+  /**
+   * Creates a sequential planner with the default time limit.
+   */
+  public EscapePlanner() {
+    this(DEFAULT_TIME_LIMIT_NANOS, false);
+  }
+
+  /**
+   * Creates a planner.
+   * @param timeLimitNanos the wall-clock cap on each call to plan()
+   * @param parallel whether to split the search across the common fork-join pool.
+   *                 A parallel search prunes in a timing-dependent order, so when it stops on a
+   *                 budget rather than on a proof it may return different routes from run to run.
+   */
+  public EscapePlanner(long timeLimitNanos, boolean parallel) {
+    this.timeLimitNanos = timeLimitNanos;
+    this.parallel = parallel;
+  }
+
+  /**
+   * Plans the gold to collect from the current node before heading for the exit.
+   * @param state Boris' current state
+   * @return the gold nodes to visit, in order (possibly none)
+   */
+  public List<Node> plan(EscapeState state) {
+    long deadline = System.nanoTime() + timeLimitNanos;
+    CompactGraph g = state.getCompactGraph();
+    int start = state.indexOf(state.getCurrentNode());
+
+    DialShortestPaths distances = new DialShortestPaths(g);
+    int[] fromStart = distances.distancesFrom(start);
+
+    // Candidates are the nearest gold tiles that could be collected on their own in time,
+    // sorted by distance from the start (and then by vertex) with both packed in one long.
+    long[] gold = new long[16];
+    int goldCount = 0;
+    for (int v = 0, n = state.vertexCount(); v < n; v++) {
+      if (v != start && state.getGold(v) > 0
+          && fromStart[v] + state.getDistanceToExit(v) <= state.getTimeRemaining()) {
+        if (goldCount == gold.length) {
+          gold = Arrays.copyOf(gold, 2 * goldCount);
+        }
+        gold[goldCount++] = ((long) fromStart[v] << 32) | v;
+      }
+    }
+    Arrays.sort(gold, 0, goldCount);
+    int k = Math.min(goldCount, MAX_CANDIDATES);
+
+    // Index 0 is the start; candidates are 1..k.
+    int[] vertex = new int[k + 1];
+    vertex[0] = start;
+    for (int i = 1; i <= k; i++) {
+      vertex[i] = (int) gold[i - 1];
+    }
+
+    // Each row of the distance matrix is a search of the whole graph. Rows are built only while
+    // they fit in half the time limit, leaving the rest for the route search; the candidates
+    // left without a row, which are the farthest, are dropped.
+    long matrixDeadline = deadline - timeLimitNanos / 2;
+    long matrixStart = System.nanoTime();
+    int[][] dist = new int[k + 1][];
+    int[] from = new int[g.vertexCount()];
+    for (int i = 0; i <= k; i++) {
+      int[] row = fromStart;
+      if (i > 0) {
+        distances.distancesFrom(vertex[i], from);
+        row = from;
+      }
+      dist[i] = new int[k + 1];
+      for (int j = 0; j <= k; j++) {
+        dist[i][j] = row[vertex[j]];
+      }
+      long now = System.nanoTime();
+      if (i < k && i > 0 && now + (now - matrixStart) / i > matrixDeadline) {
+        k = i; // the next row would not be done in time
+      }
+    }
+    int[] value = new int[k + 1];
+    int[] toExit = new int[k + 1];
+    for (int i = 1; i <= k; i++) {
+      value[i] = state.getGold(vertex[i]);
+      toExit[i] = state.getDistanceToExit(vertex[i]);
+    }
+    if (dist.length > k + 1) {
+      dist = Arrays.copyOf(dist, k + 1);
+      for (int i = 0; i <= k; i++) {
+        dist[i] = Arrays.copyOf(dist[i], k + 1);
+      }
+    }
+
+    Search search = new Search(dist, value, toExit, state.getTimeRemaining(), deadline);
+    search.run(parallel);
+
+    List<Node> route = new ArrayList<>();
+    for (int c : search.bestRoute) {
+      route.add(state.getNodeByIndex(vertex[c]));
+    }
+    return route;
+  }
+
+  /**
+   * The branch-and-bound search over routes through candidates 1..k, starting at candidate 0.
+   */
+  private static class Search {
+    private final int[][] dist;
+    private final int[] value;
+    private final int[] toExit;
+    private final int timeRemaining;
+    private final long deadline;
+    private final int k;
+
+    private final AtomicLong expansions = new AtomicLong();
+    private final AtomicInteger bestValue = new AtomicInteger();
+    private volatile boolean stopped;
+    /** The best route found so far, as candidate indices; guarded by this. */
+    private int[] bestRoute = new int[0];
+
+    Search(int[][] dist, int[] value, int[] toExit, int timeRemaining, long deadline) {
+      this.dist = dist;
+      this.value = value;
+      this.toExit = toExit;
+      this.timeRemaining = timeRemaining;
+      this.deadline = deadline;
+      this.k = value.length - 1;
+    }
+
+    /**
+     * Seeds the search with the greedy route and then runs the branch and bound.
+     */
+    void run(boolean parallel) {
+      greedy();
+      if (parallel) {
+        ForkJoinPool.commonPool().invoke(new Branch(0, 0, 0, new int[0]));
+      } else {
+        new Walker().dfs(0, 0, 0, 0);
+      }
+    }
+
+    /**
+     * Records as the incumbent the route that repeatedly goes to the nearest candidate
+     * from which the exit can still be reached in time.
+     */
+    private void greedy() {
+      boolean[] visited = new boolean[k + 1];
+      int[] route = new int[k];
+      int cur = 0;
+      int used = 0;
+      int total = 0;
+      int depth = 0;
+      while (true) {
+        int next = -1;
+        for (int c = 1; c <= k; c++) {
+          if (!visited[c] && feasible(cur, c, used)
+              && (next < 0 || dist[cur][c] < dist[cur][next])) {
+            next = c;
+          }
+        }
+        if (next < 0) {
+          break;
+        }
+        visited[next] = true;
+        used += dist[cur][next];
+        total += value[next];
+        route[depth++] = next;
+        cur = next;
+      }
+      offer(total, route, depth);
+    }
+
+    /**
+     * Returns whether candidate c can be visited from cur, having used the given time,
+     * with time left to reach the exit afterwards.
+     */
+    private boolean feasible(int cur, int c, int used) {
+      return used + dist[cur][c] + toExit[c] <= timeRemaining;
+    }
+
+    /**
+     * Records route[0..depth) as the best route if its value beats the best so far.
+     */
+    private synchronized void offer(int total, int[] route, int depth) {
+      if (total > bestValue.get()) {
+        bestValue.set(total);
+        bestRoute = Arrays.copyOf(route, depth);
+      }
+    }
+
+    /**
+     * Counts an expansion and returns whether the search should stop.
+     */
+    private boolean outOfBudget() {
+      if (stopped) {
+        return true;
+      }
+      long n = expansions.incrementAndGet();
+      if (n >= MAX_EXPANSIONS || (n % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline)) {
+        stopped = true;
+      }
+      return stopped;
+    }
+
+    /**
+     * The state of one sequential depth-first search: the route being extended.
+     */
+    private class Walker {
+      private final boolean[] visited = new boolean[k + 1];
+      private final int[] route = new int[k];
+      /** Sort keys of the children at each depth, reused across the search. */
+      private final long[][] children = new long[k + 1][];
+
+      /**
+       * Extends the route route[0..depth), which ends at cur after the given time
+       * with the given gold collected.
+       */
+      void dfs(int cur, int used, int total, int depth) {
+        if (total > bestValue.get()) {
+          offer(total, route, depth);
+        }
+        if (outOfBudget()) {
+          return;
+        }
+
+        if (children[depth] == null) {
+          children[depth] = new long[k];
+        }
+        long[] keys = children[depth];
+        int n = 0;
+        int bound = total;
+        for (int c = 1; c <= k; c++) {
+          if (!visited[c] && feasible(cur, c, used)) {
+            bound += value[c];
+            keys[n++] = sortKey(value[c], dist[cur][c], c);
+          }
+        }
+        if (bound <= bestValue.get()) {
+          return;
+        }
+        Arrays.sort(keys, 0, n);
+
+        for (int i = 0; i < n && !stopped; i++) {
+          int c = (int) keys[i];
+          visited[c] = true;
+          route[depth] = c;
+          dfs(c, used + dist[cur][c], total + value[c], depth + 1);
+          visited[c] = false;
+        }
+      }
+
+      /**
+       * Marks the route route[0..depth) as taken.
+       */
+      void follow(int[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+          visited[prefix[i]] = true;
+          route[i] = prefix[i];
+        }
+      }
+    }
+
+    /**
+     * A fork-join task that searches every extension of a route prefix, forking one task
+     * per child for the first few levels and searching sequentially below them.
+     */
+    @SuppressWarnings("serial")
+    private class Branch extends RecursiveAction {
+      private static final int FORK_DEPTH = 2;
+      private final int cur;
+      private final int used;
+      private final int total;
+      private final int[] prefix;
+
+      Branch(int cur, int used, int total, int[] prefix) {
+        this.cur = cur;
+        this.used = used;
+        this.total = total;
+        this.prefix = prefix;
+      }
+
+      @Override
+      protected void compute() {
+        if (prefix.length >= FORK_DEPTH) {
+          Walker walker = new Walker();
+          walker.follow(prefix);
+          walker.dfs(cur, used, total, prefix.length);
+          return;
+        }
+        if (total > bestValue.get()) {
+          offer(total, prefix, prefix.length);
+        }
+
+        boolean[] onRoute = new boolean[k + 1];
+        for (int c : prefix) {
+          onRoute[c] = true;
+        }
+        List<Branch> branches = new ArrayList<>();
+        int bound = total;
+        for (int c = 1; c <= k; c++) {
+          if (!onRoute[c] && feasible(cur, c, used)) {
+            bound += value[c];
+            int[] next = Arrays.copyOf(prefix, prefix.length + 1);
+            next[prefix.length] = c;
+            branches.add(new Branch(c, used + dist[cur][c], total + value[c], next));
+          }
+        }
+        if (bound <= bestValue.get() || stopped) {
+          return; // as in Walker.dfs: no extension of this prefix can beat the best route
+        }
+        invokeAll(branches);
+      }
+    }
+  }
+
+  /**
+   * Returns a sort key that orders candidates by decreasing gold per unit of distance,
+   * with the candidate index in the low bits.
+   */
+  private static long sortKey(int gold, int distance, int candidate) {
+    long ratio = (long) (gold * (double) (1 << 18) / Math.max(distance, 1));
+    return ((Integer.MAX_VALUE - Math.min(ratio, Integer.MAX_VALUE)) << 32) | candidate;
+  }
+}
@@ -8,6 +8,22 @@ public class Explorer {
 
   private ExplorationState s;
 
+  // Workspace for the escape-phase searches, indexed by EscapeState.indexOf() and reused
+  // across replans and across escapes from graphs no larger than the last.
+  // dist, goldOnTheWay and pred hold for v only if reached[v] == search, so a search
+  // costs time for the vertices it reaches rather than for the whole graph.
+  private int[] dist;
+  private int[] goldOnTheWay;
+  private int[] pred;
+  private int[] reached;
+  private int search;
+  private IntMinHeap heap;
+  private AStar aStar;
+  /** The graph aStar searches. */
+  private CompactGraph graph;
+
+  private final EscapePlanner planner = new EscapePlanner();
+
 
   /**
    * Explore the cavern, trying to find the orb in as few steps as possible.
@@ -36,13 +52,24 @@ public class Explorer {
    * <p>
    * A suggested first implementation that will always find the orb, but likely won't
    * receive a large bonus multiplier, is a depth-first search.
+   * <p>
+   * Exploration is done by a MapExplorer, which maps the tiles seen so far and travels
+   * to the most promising unexplored one along the shortest known route.
    *
    * @param state the information available at the current state
    */
   public void explore(ExplorationState state) {
+    new MapExplorer().explore(state);
+  }
+
+  /**
+   * Explores the cavern with a recursive depth-first search, visiting the neighbours
+   * nearest the orb first. This was the original exploration strategy, kept for comparison.
+   * @param state the information available at the current state
+   */
+  public void exploreDepthFirst(ExplorationState state) {
     this.s = state;
     dfsExplore(new HashSet<>());
-
   }
 
   /**
@@ -93,7 +120,8 @@ public class Explorer {
    * <p>
    * You now have access to the entire underlying graph, which can be accessed through EscapeState.
    * getCurrentNode() and getExit() will return you Node objects of interest, and getVertices()
-   * will return a collection of all nodes on the graph.
+   * will return a collection of all nodes on the graph. indexOf() numbers the nodes
+   * 0..vertexCount()-1, so anything kept per node can be kept in arrays.
    * <p>
    * Note that time is measured entirely in the number of steps taken, and for each step
    * the time remaining is decremented by the weight of the edge taken. You can use
@@ -110,32 +138,43 @@ public class Explorer {
    * @param state the information available at the current state
    */
   public void escape(EscapeState state) {
-    Node current = state.getCurrentNode();
-    Node exit = state.getExit();
+    initWorkspace(state);
 
-    Path bestPath = bestPath(state); // the best path to gold or to the exit, depending on time
-
-    if (current.getTile().getGold() > 0) { // pick up gold at start node
+    if (state.getCurrentNode().getTile().getGold() > 0) { // pick up gold at start node
       state.pickUpGold();
     }
 
-    while (current != exit) {
-      for (Node n : bestPath.getNodes()) {
-        state.moveTo(n);
-        if (n.getTile().getGold() > 0) {
-          state.pickUpGold();
-        }
+    // Follow the planned route, skipping gold already picked up on the way.
+    // Every leg is a shortest path, so the plan always leaves time to reach the exit.
+    for (Node stop : planner.plan(state)) {
+      if (stop.getTile().getGold() == 0) {
+        continue;
       }
-
-      if (state.getCurrentNode() == state.getExit()) {
-        return;
+      Path leg = shortestPath(state, state.getCurrentNode(), stop);
+      if (leg.getSize() + state.getDistanceToExit(stop) > state.getTimeRemaining()) {
+        break; // never happens for a valid plan, but the exit always comes first
       }
+      follow(state, leg);
+    }
 
-      current = state.getCurrentNode();
-      exit = state.getExit();
-      bestPath = bestPath(state); // Calculates the new best path to gold or to the exit.
+    // Spend any time left over on the nearest reachable gold, then leave.
+    while (!state.getCurrentNode().equals(state.getExit())) {
+      follow(state, bestPath(state)); // the best path to gold or to the exit, depending on time
     }
+  }
 
+  /**
+   * Moves along path, picking up any gold on the way.
+   * @param state Boris' current state
+   * @param path the path to follow, starting next to the current node
+   */
+  private static void follow(EscapeState state, Path path) {
+    for (Node n : path.getNodes()) {
+      state.moveTo(n);
+      if (n.getTile().getGold() > 0) {
+        state.pickUpGold();
+      }
+    }
   }
 
   /**
@@ -145,101 +184,155 @@ public class Explorer {
    * @return Path object of the best path to gold or to the exit.
    */
   private Path bestPath(EscapeState state) {
-    Path bestPath = new Path(0, new ArrayList<>());
-
-    for (Node n : state.getVertices()) {
-      if (n.getTile().getGold() > 0) { // get all nodes containing gold
-        Path toGold = shortestPath(state.getCurrentNode(), n); // get shortest path to that node
-        if (toGold != null) { // checks if the path exists
-          int distToGold = toGold.getSize(); // get the distance in steps to that node
-          // if that distance is less than the best path
-          if (bestPath.getNodes().isEmpty() || distToGold < bestPath.getSize()) {
-            Path toExit = shortestPath(n, state.getExit());
-            // check if dist to node then to exit is achievable in time remaining
-            if (distToGold + toExit.getSize() < state.getTimeRemaining()) {
-              bestPath = toGold;
-            }
-          }
-        }
-      }
-    }
-    if (bestPath.getNodes().isEmpty()) { // if no such path exists, return path to exit
-      return shortestPath(state.getCurrentNode(), state.getExit());
+    Path toGold = nearestReachableGold(state);
+    if (toGold == null) { // if no such path exists, return path to exit
+      return shortestPath(state, state.getCurrentNode(), state.getExit());
     }
     else {
-      return bestPath;
+      return toGold;
     }
   }
 
-
   /**
-   * Calculates and builds the shortest path from point A to point B using Dijkstra algorithm.
-   * @param start the source tile
-   * @param end the destination tile
-   * @return the shortest path as a Path object
+   * Makes the escape workspace fit the graph in state, keeping the arrays of an earlier escape
+   * if they are big enough.
+   * @param state Boris' current state
    */
-  private Path shortestPath(Node start, Node end) {
-    PriorityQueue<NodeInfo> queue = new PriorityQueue<>();
-
-    Map<Node, NodeInfo> nodeTable = new HashMap<>(); // table of each node, its predecessor and distance from start
-    Set<Node> visited = new HashSet<>();
-
-    NodeInfo startInfo = new NodeInfo(start, 0, null); // start node's distance from start is 0, predecessor is null
-    nodeTable.put(start, startInfo);
-    queue.add(startInfo);
-
-    while (!queue.isEmpty()) {
-      NodeInfo nodeInfo = queue.poll(); // retrieves the top element from priority queue
-      Node node = nodeInfo.getNode();
-      visited.add(node);
+  private void initWorkspace(EscapeState state) {
+    int n = state.vertexCount();
+    if (dist == null || dist.length < n) {
+      dist = new int[n];
+      goldOnTheWay = new int[n];
+      pred = new int[n];
+      reached = new int[n];
+      search = 0;
+      heap = new IntMinHeap(n);
+    }
+    if (state.getCompactGraph() != graph) {
+      graph = state.getCompactGraph();
+      aStar = new AStar(graph);
+    }
+  }
 
-      if (node.equals(end)) {
-        return buildShortestPath(nodeInfo); // build a path from the most recent visited node back to start
+  /**
+   * Finds the nearest node containing gold from which the exit can still be reached in time,
+   * using a single Dijkstra search from the current node. Nodes are settled in order of distance,
+   * so the first such gold node settled is the nearest, and the search stops early once every
+   * remaining node is too far away to reach in the time left.
+   * Among equally short paths, the one passing the most gold is preferred.
+   * @param state Boris' current state
+   * @return the shortest path to that gold node, or null if there is none.
+   */
+  private Path nearestReachableGold(EscapeState state) {
+    CompactGraph g = state.getCompactGraph();
+    int source = state.indexOf(state.getCurrentNode());
+    int timeRemaining = state.getTimeRemaining();
+
+    nextSearch();
+    heap.clear();
+    reached[source] = search;
+    dist[source] = 0;
+    goldOnTheWay[source] = 0;
+    pred[source] = -1;
+    heap.add(source, 0);
+
+    while (!heap.isEmpty()) {
+      int v = heap.poll();
+      int d = dist[v];
+      if (d >= timeRemaining) {
+        return null; // any gold from here on would leave no time to reach the exit
       }
 
-      Set<Node> neighbours = node.getNeighbours();
-      for (Node n : neighbours) {
-        if (visited.contains(n)) {
-          continue;
-        }
+      if (v != source && state.getGold(v) > 0 && d + state.getDistanceToExit(v) < timeRemaining) {
+        return buildPath(state, v);
+      }
 
-        int distance = node.getEdge(n).length;
-        int totalDistance = nodeInfo.getTotalDist() + distance;
-
-        // retrieves the neighbours info from the table to see if a path has been built to it before
-        NodeInfo neighbourInfo = nodeTable.get(n);
-        if (neighbourInfo == null) { // if no path has been built to this node then add it to the table
-          neighbourInfo = new NodeInfo(n, totalDistance, nodeInfo);
-          nodeTable.put(n, neighbourInfo);
-          queue.add(neighbourInfo);
-        } // if this path to the node is shorter than the previous path then set this path as the better one
-        else if (totalDistance < neighbourInfo.getTotalDist()) {
-          neighbourInfo.setTotalDist(totalDistance);
-          neighbourInfo.setPredecessor(nodeInfo);
-          queue.remove(neighbourInfo); // remove/re-add the node to order it in the priority queue
-          queue.add(neighbourInfo);
+      for (int k = g.offset(v), end = g.offset(v + 1); k < end; k++) {
+        int w = g.target(k);
+        int totalDistance = d + g.weight(k);
+        int totalGold = goldOnTheWay[v] + state.getGold(w);
+        if (reached[w] != search || totalDistance < dist[w]
+            || (totalDistance == dist[w] && totalGold > goldOnTheWay[w])) {
+          reached[w] = search;
+          dist[w] = totalDistance;
+          goldOnTheWay[w] = totalGold;
+          pred[w] = v;
+          heap.addOrDecrease(w, priority(totalDistance, totalGold));
         }
       }
     }
-    return null; // return null if no path found
+    return null;
   }
 
   /**
-   * Builds a Path from a destination back to the source and flips it to put it in traversal order.
-   * @param nodeInfo the destination node's information
-   * @return a Path object of the shortest path to the destination
+   * Starts a new search, invalidating the workspace entries of all earlier ones.
+   */
+  private void nextSearch() {
+    search++;
+    if (search == Integer.MAX_VALUE) {
+      Arrays.fill(reached, 0); // wrapped around: old stamps could now look current
+      search = 1;
+    }
+  }
+
+  /**
+   * Returns the heap priority of a path of the given length collecting the given gold:
+   * shorter paths first, and more gold first among paths of equal length.
+   */
+  private static double priority(int distance, int gold) {
+    return distance - gold / (double) (1 << 30);
+  }
+
+  /**
+   * Builds the Path to node v from the predecessors left by the last search, in traversal order.
+   * @param state Boris' current state
+   * @param v the index of the destination node
+   * @return a Path object of the shortest path to v, excluding the source node
    */
-  private static Path buildShortestPath(NodeInfo nodeInfo) {
-    List<Node> path = new ArrayList<>(); // holds the nodes in the path
-    int pathDist = nodeInfo.getTotalDist(); // the total weighted length of the path
+  private Path buildPath(EscapeState state, int v) {
+    List<Node> path = new ArrayList<>();
+    for (int u = v; pred[u] != -1; u = pred[u]) {
+      path.add(state.getNodeByIndex(u));
+    }
+    Collections.reverse(path);
+    return new Path(dist[v], path);
+  }
 
-    while (nodeInfo != null) {
-      path.add(nodeInfo.getNode()); // reverses through the path and adds each node to the list
-      nodeInfo = nodeInfo.getPredecessor(); // obtains each node's predecessor
+
+  /**
+   * Calculates and builds the shortest path from point A to point B using an A* search,
+   * guided by the grid distance between tiles.
+   * @param state Boris' current state
+   * @param start the source tile
+   * @param end the destination tile
+   * @return the shortest path as a Path object, or null if there is none
+   */
+  private Path shortestPath(EscapeState state, Node start, Node end) {
+    int[] vertices = aStar.path(state.indexOf(start), state.indexOf(end));
+    if (vertices == null) {
+      return null; // return null if no path found
     }
-    path.remove(path.size()-1); // removes the source node as this is Boris' current location
-    Collections.reverse(path); // reverses the elements in path to traversal order
 
+    List<Node> path = new ArrayList<>(vertices.length - 1);
+    int pathDist = 0; // the total weighted length of the path
+    for (int i = 1; i < vertices.length; i++) { // skips the source node as this is Boris' current location
+      pathDist += edgeLength(vertices[i - 1], vertices[i]);
+      path.add(state.getNodeByIndex(vertices[i]));
+    }
     return new Path(pathDist, path);
   }
+
+  /**
+   * Returns the length of the edge from u to v in the escape graph.
+   * @param u the index of a node
+   * @param v the index of a neighbour of u
+   */
+  private int edgeLength(int u, int v) {
+    for (int k = graph.offset(u), end = graph.offset(u + 1); k < end; k++) {
+      if (graph.target(k) == v) {
+        return graph.weight(k);
+      }
+    }
+    throw new IllegalArgumentException("edgeLength: " + v + " is not a neighbour of " + u);
+  }
 }
@@ -0,0 +1,102 @@
+package student;
+
+/**
+ * A map from long keys to int values, using open addressing with linear probing over
+ * primitive arrays so that neither keys nor values are boxed.
+ * Entries can be added and updated but not removed.
+ */
+public class LongIntMap {
+  private static final double MAX_LOAD = 0.5;
+
+  private long[] keys;
+  private int[] values;
+  private boolean[] used;
+  private int size;
+  private final int missing;
+
+  /**
+   * Creates an empty map.
+   * @param missing the value get() returns for keys that are not in the map
+   */
+  public LongIntMap(int missing) {
+    this.missing = missing;
+    keys = new long[16];
+    values = new int[16];
+    used = new boolean[16];
+  }
+
+  /**
+   * Returns the number of keys in the map.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the value for key, or the missing value given to the constructor if there is none.
+   */
+  public int get(long key) {
+    int mask = keys.length - 1;
+    for (int i = slot(key, mask); used[i]; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return values[i];
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Maps key to value, replacing any earlier value.
+   */
+  public void put(long key, int value) {
+    int mask = keys.length - 1;
+    int i = slot(key, mask);
+    while (used[i]) {
+      if (keys[i] == key) {
+        values[i] = value;
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    used[i] = true;
+    keys[i] = key;
+    values[i] = value;
+    size++;
+    if (size > keys.length * MAX_LOAD) {
+      grow();
+    }
+  }
+
+  /**
+   * Doubles the capacity of the table and rehashes every entry.
+   */
+  private void grow() {
+    long[] oldKeys = keys;
+    int[] oldValues = values;
+    boolean[] oldUsed = used;
+    keys = new long[oldKeys.length * 2];
+    values = new int[oldKeys.length * 2];
+    used = new boolean[oldKeys.length * 2];
+    int mask = keys.length - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldUsed[j]) {
+        int i = slot(oldKeys[j], mask);
+        while (used[i]) {
+          i = (i + 1) & mask;
+        }
+        used[i] = true;
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /**
+   * Returns the home slot of key in a table with the given mask, mixing the bits of the key
+   * so that runs of consecutive ids do not cluster.
+   */
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+}
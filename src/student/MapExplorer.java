@@ -0,0 +1,184 @@
+package student;
+
+import game.ExplorationState;
+import game.Node;
+
+import java.util.Arrays;
+
+/**
+ * An iterative exploration engine that builds a map of the cavern as it goes.
+ * <p>
+ * Every tile seen so far is given a local index, and the map records each tile's distance to the
+ * orb (along the grid) and its known neighbours in primitive arrays. A tile is "expanded" once
+ * Boris has stood on it and seen all of its neighbours; tiles seen but not yet expanded form the
+ * frontier. At each step Boris picks the frontier tile with the lowest estimated total cost: the
+ * number of steps to reach it through the known map, plus its grid distance to the orb. He then
+ * walks there along the shortest known route and expands it. Unlike a recursive depth-first search,
+ * this uses no call stack per tile, and it never retraces a dead end step by step when a shorter
+ * way back to a promising tile is already known.
+ */
+public class MapExplorer {
+  private static final int NONE = -1;
+
+  /** Maps a node id to its local index. */
+  private final LongIntMap indexOf = new LongIntMap(NONE);
+  /** Per local index: the node id, its grid distance to the orb, and whether it is expanded. */
+  private long[] ids = new long[64];
+  private int[] distanceToOrb = new int[64];
+  private boolean[] expanded = new boolean[64];
+  /** adjacency[4i..4i+3] holds the known neighbours of tile i, padded with NONE. */
+  private int[] adjacency = new int[4 * 64];
+  private int count;
+
+  /** Breadth-first search workspace, valid where stamp[i] == search. */
+  private int[] steps = new int[64];
+  private int[] parent = new int[64];
+  private int[] stamp = new int[64];
+  private int[] queue = new int[64];
+  private int search;
+
+  /** Buffers for ExplorationState.getNeighbours(long[], int[]). */
+  private final long[] neighbourIds = new long[Node.MAX_EXITS];
+  private final int[] neighbourDistances = new int[Node.MAX_EXITS];
+
+  /**
+   * Explores from Boris' current location until he stands on the orb.
+   * @param state the information available at the current state
+   */
+  public void explore(ExplorationState state) {
+    int current = indexOf(state.getCurrentLocation(), state.getDistanceToTarget());
+    while (distanceToOrb[current] != 0) {
+      expand(state, current);
+      int next = nearestFrontier(current);
+      if (next == NONE) {
+        return; // the whole cavern is mapped and the orb is unreachable
+      }
+      walkTo(state, next);
+      current = next;
+    }
+  }
+
+  /**
+   * Returns the number of tiles mapped so far.
+   */
+  public int mappedTiles() {
+    return count;
+  }
+
+  /**
+   * Records the neighbours of tile i, on which Boris is standing.
+   */
+  private void expand(ExplorationState state, int i) {
+    if (expanded[i]) {
+      return;
+    }
+    int n = state.getNeighbours(neighbourIds, neighbourDistances);
+    for (int k = 0; k < n; k++) {
+      int w = indexOf(neighbourIds[k], neighbourDistances[k]); // may grow adjacency
+      adjacency[4 * i + k] = w;
+    }
+    expanded[i] = true;
+  }
+
+  /**
+   * Returns the frontier tile minimising known steps from tile from plus grid distance to the orb,
+   * breaking ties towards the tile nearer the orb, or NONE if the frontier is empty.
+   * The breadth-first search over the known map stops once no tile further away could do better.
+   */
+  private int nearestFrontier(int from) {
+    nextSearch();
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = from;
+    stamp[from] = search;
+    steps[from] = 0;
+    parent[from] = NONE;
+
+    int best = NONE;
+    int bestCost = Integer.MAX_VALUE;
+    while (head < tail) {
+      int v = queue[head++];
+      if (steps[v] > bestCost) {
+        break; // every remaining tile is further away than the best cost, so costs more
+      }
+      if (!expanded[v]) {
+        int cost = steps[v] + distanceToOrb[v];
+        if (cost < bestCost || (cost == bestCost && distanceToOrb[v] < distanceToOrb[best])) {
+          best = v;
+          bestCost = cost;
+        }
+        continue; // its neighbours are not known yet
+      }
+      for (int k = 4 * v; k < 4 * v + 4 && adjacency[k] != NONE; k++) {
+        int w = adjacency[k];
+        if (stamp[w] != search) {
+          stamp[w] = search;
+          steps[w] = steps[v] + 1;
+          parent[w] = v;
+          queue[tail++] = w;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Moves Boris along the route to tile target found by the last call to nearestFrontier().
+   */
+  private void walkTo(ExplorationState state, int target) {
+    int length = steps[target];
+    int[] route = new int[length];
+    for (int v = target, i = length - 1; i >= 0; v = parent[v], i--) {
+      route[i] = v;
+    }
+    for (int v : route) {
+      state.moveTo(ids[v]);
+    }
+  }
+
+  /**
+   * Returns the local index of the node with the given id, mapping it with the given
+   * distance to the orb if it has not been seen before.
+   */
+  private int indexOf(long id, int distance) {
+    int i = indexOf.get(id);
+    if (i != NONE) {
+      return i;
+    }
+    if (count == ids.length) {
+      grow();
+    }
+    i = count++;
+    indexOf.put(id, i);
+    ids[i] = id;
+    distanceToOrb[i] = distance;
+    Arrays.fill(adjacency, 4 * i, 4 * i + 4, NONE);
+    return i;
+  }
+
+  /**
+   * Doubles the capacity of the per-tile arrays.
+   */
+  private void grow() {
+    int capacity = ids.length * 2;
+    ids = Arrays.copyOf(ids, capacity);
+    distanceToOrb = Arrays.copyOf(distanceToOrb, capacity);
+    expanded = Arrays.copyOf(expanded, capacity);
+    adjacency = Arrays.copyOf(adjacency, 4 * capacity);
+    steps = Arrays.copyOf(steps, capacity);
+    parent = Arrays.copyOf(parent, capacity);
+    stamp = Arrays.copyOf(stamp, capacity);
+    queue = Arrays.copyOf(queue, capacity);
+  }
+
+  /**
+   * Starts a new breadth-first search, invalidating the state of earlier ones.
+   */
+  private void nextSearch() {
+    search++;
+    if (search == Integer.MAX_VALUE) {
+      Arrays.fill(stamp, 0);
+      search = 1;
+    }
+  }
+}